@@ -16,6 +16,7 @@
 package de.mirkosertic.desktopsearch;
 
 import lombok.extern.slf4j.Slf4j;
+import org.apache.solr.common.params.CursorMarkParams;
 import org.reactivestreams.Subscription;
 import reactor.core.Exceptions;
 import reactor.core.publisher.BaseSubscriber;
@@ -24,16 +25,23 @@ import reactor.core.scheduler.Schedulers;
 
 import java.io.File;
 import java.io.IOException;
+import java.io.UncheckedIOException;
 import java.nio.file.Files;
 import java.nio.file.Path;
 import java.nio.file.attribute.BasicFileAttributes;
 import java.text.NumberFormat;
+import java.util.Collections;
 import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
 
 @Slf4j
 class Backend implements ConfigurationChangeListener {
 
+    private static final int WARMUP_QUERIES = 20;
+
     public static class FileEvent {
         public enum EventType {
             UPDATED, DELETED
@@ -63,7 +71,7 @@ class Backend implements ConfigurationChangeListener {
     }
 
     private LuceneIndexHandler luceneIndexHandler;
-    private final ContentExtractor contentExtractor;
+    private volatile ContentExtractor contentExtractor;
     private ProgressListener progressListener;
     private final Map<Configuration.CrawlLocation, DirectoryWatcher> locations;
     private final Notifier notifier;
@@ -72,15 +80,18 @@ class Backend implements ConfigurationChangeListener {
     private Configuration configuration;
     private DirectoryListener directoryListener;
     private final Statistics statistics;
+    private final QueryLog queryLog;
     private Thread progressInfo;
+    private final CompletableFuture<Void> startup;
 
-    public Backend(final Notifier aNotifier, final Configuration aConfiguration, final PreviewProcessor aPreviewProcessor) throws IOException {
+    public Backend(final Notifier aNotifier, final Configuration aConfiguration, final PreviewProcessor aPreviewProcessor) {
         notifier = aNotifier;
         previewProcessor = aPreviewProcessor;
         locations = new HashMap<>();
         watchServiceCache = new WatchServiceCache();
-        contentExtractor = new ContentExtractor(aConfiguration);
+        configuration = aConfiguration;
         statistics = new Statistics();
+        queryLog = new QueryLog(new File(aConfiguration.getConfigDirectory(), "querylog.json"));
         // This is our simple flux
         final Flux<FileEvent> theFileEventFlux = Flux.push(sink -> directoryListener = new DirectoryListener() {
 
@@ -89,11 +100,10 @@ class Backend implements ConfigurationChangeListener {
                 synchronized (this) {
                     try {
                         if (contentExtractor.supportsFile(aFile.toString())) {
-                            final var theAttributes = Files.readAttributes(aFile, BasicFileAttributes.class);
-
+                            // A deleted file has no attributes anymore
                             statistics.newDeletedFileJob();
 
-                            sink.next(new FileEvent(aLocation, aFile, theAttributes, FileEvent.EventType.DELETED));
+                            sink.next(new FileEvent(aLocation, aFile, null, FileEvent.EventType.DELETED));
                         }
                     } catch (final Exception e) {
                         log.error("Error processing file {}", aFile, e);
@@ -196,21 +206,93 @@ class Backend implements ConfigurationChangeListener {
             }
         });
 
-        configurationUpdated(aConfiguration);
+        // The index and the language models of the content extractor load in parallel, without blocking
+        // the window or the web server. Crawl locations are watched once both are ready
+        final var theContentExtractor = CompletableFuture.runAsync(() -> contentExtractor = new ContentExtractor(aConfiguration));
+        final var theIndex = CompletableFuture.runAsync(() -> {
+            try {
+                setIndexLocation(aConfiguration);
+            } catch (final IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        });
+        final var theStartTime = System.currentTimeMillis();
+        startup = CompletableFuture.allOf(theContentExtractor, theIndex).thenRun(() -> {
+            try {
+                applyConfiguration(aConfiguration);
+            } catch (final IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        }).whenComplete((aResult, aException) -> {
+            if (aException != null) {
+                log.error("Error starting the backend", aException);
+            } else {
+                log.info("Backend ready after {}ms", System.currentTimeMillis() - theStartTime);
+            }
+        });
+    }
+
+    // True once the index is open and searches are possible
+    public boolean isReady() {
+        return startup.isDone() && !startup.isCompletedExceptionally();
+    }
+
+    // True if the index or the content extractor could not be loaded. Searches are not possible until a restart
+    public boolean isFailed() {
+        return startup.isCompletedExceptionally();
+    }
+
+    private void awaitStartup() throws IOException {
+        try {
+            startup.join();
+        } catch (final CompletionException e) {
+            throw new IOException(e.getCause());
+        }
     }
 
     @Override
-    public void configurationUpdated(final Configuration aConfiguration) throws IOException {
+    public synchronized void configurationUpdated(final Configuration aConfiguration) throws IOException {
+        awaitStartup();
+        final var thePrevious = configuration;
+        applyConfiguration(aConfiguration);
+
+        // Passages and clusters are computed at index time. The update check of a crawl tells the
+        // files indexed with the previous settings, and indexes them again
+        if (thePrevious.isPassageIndexing() != aConfiguration.isPassageIndexing()
+                || !thePrevious.isFoldNearDuplicates() && aConfiguration.isFoldNearDuplicates()) {
+            notifier.showInformation("Index settings changed, all files are indexed again");
+            crawlLocations();
+        }
+    }
 
-        setIndexLocation(aConfiguration);
+    // Only the parts affected by a change are rebuilt. The index is only reopened if it moved,
+    // and watchers are only started or stopped for added or removed crawl locations
+    private void applyConfiguration(final Configuration aConfiguration) throws IOException {
+
+        final var thePrevious = configuration;
+        if (luceneIndexHandler == null || !thePrevious.getConfigDirectory().equals(aConfiguration.getConfigDirectory())) {
+            setIndexLocation(aConfiguration);
+        } else {
+            luceneIndexHandler.configurationUpdated(aConfiguration);
+        }
+        if (isContentExtractionChanged(thePrevious, aConfiguration)) {
+            contentExtractor = new ContentExtractor(aConfiguration);
+        }
 
         configuration = aConfiguration;
-        locations.values().forEach(DirectoryWatcher::stopWatching);
-        locations.clear();
+        for (final var theLocation : thePrevious.getCrawlLocations()) {
+            if (!aConfiguration.getCrawlLocations().contains(theLocation)) {
+                final var theWatcher = locations.remove(theLocation);
+                if (theWatcher != null) {
+                    theWatcher.stopWatching();
+                }
+                luceneIndexHandler.removeLocation(theLocation.getId());
+            }
+        }
 
         aConfiguration.getCrawlLocations().forEach(e -> {
             final var theDirectory = e.getDirectory();
-            if (theDirectory.exists() && theDirectory.isDirectory()) {
+            if (!locations.containsKey(e) && theDirectory.exists() && theDirectory.isDirectory()) {
                 try {
                     add(e);
                 } catch (final IOException e1) {
@@ -220,6 +302,13 @@ class Backend implements ConfigurationChangeListener {
         });
     }
 
+    private static boolean isContentExtractionChanged(final Configuration aPrevious, final Configuration aCurrent) {
+        return !aPrevious.getEnabledLanguages().equals(aCurrent.getEnabledLanguages())
+                || !aPrevious.getEnabledDocumentTypes().equals(aCurrent.getEnabledDocumentTypes())
+                || !aPrevious.getMetaDataNameReplacement().equals(aCurrent.getMetaDataNameReplacement())
+                || aPrevious.isNaturalLanguageProcessing() != aCurrent.isNaturalLanguageProcessing();
+    }
+
     public void setProgressListener(final ProgressListener aProgressListener) {
         progressListener = aProgressListener;
 
@@ -239,14 +328,16 @@ class Backend implements ConfigurationChangeListener {
                     final long remaining = Math.max(totalJobs - completedJobs, 0);
 
                     if (remaining > 0) {
+                        // In bulk mode new files only become searchable about once a minute
+                        final var theMode = luceneIndexHandler.isBulkIndexing() ? " Bulk indexing." : "";
                         if (lastRemaining == -1) {
-                            lastMessage = remaining + " Files are still in the indexing queue.";
+                            lastMessage = remaining + " Files are still in the indexing queue." + theMode;
                             progressListener.infotext(lastMessage);
                         } else {
                             final var thruput = lastRemaining - remaining;
                             if (thruput > 0) {
                                 final double eta = ((double) remaining) / thruput;
-                                lastMessage = remaining + " Files are still in the indexing queue, " + format.format(eta) + " seconds remaining (ETA).";
+                                lastMessage = remaining + " Files are still in the indexing queue, " + format.format(eta) + " seconds remaining (ETA)." + theMode;
                                 progressListener.infotext(lastMessage);
                             } else {
                                 if (lastMessage.length() > 0) {
@@ -256,6 +347,10 @@ class Backend implements ConfigurationChangeListener {
                         }
                     } else {
                         lastMessage = "";
+                        final var theMaintenance = isReady() ? luceneIndexHandler.maintenanceProgress() : null;
+                        if (theMaintenance != null) {
+                            progressListener.infotext(theMaintenance);
+                        }
                     }
 
                     lastRemaining = remaining;
@@ -277,16 +372,35 @@ class Backend implements ConfigurationChangeListener {
 
     private void setIndexLocation(final Configuration aConfiguration) throws IOException {
         if (luceneIndexHandler != null) {
-            shutdown();
+            luceneIndexHandler.shutdown();
         }
-        luceneIndexHandler = new LuceneIndexHandler(aConfiguration, previewProcessor);
+        luceneIndexHandler = new LuceneIndexHandler(aConfiguration, previewProcessor, this::staleFileFound);
+        luceneIndexHandler.warmUpWith(() -> queryLog.top(WARMUP_QUERIES));
+        luceneIndexHandler.queueDepthFrom(() -> Math.max(statistics.totalJobs() - statistics.completedJobs(), 0));
     }
 
-    public void crawlLocations() {
+    // Search results pointing to files no longer on disk are removed like any other deleted file
+    private void staleFileFound(final File aFile) {
+        final var thePath = aFile.toPath();
+        Configuration.CrawlLocation theLocation = null;
+        for (final var theCandidate : configuration.getCrawlLocations()) {
+            if (thePath.startsWith(theCandidate.getDirectory().toPath())) {
+                theLocation = theCandidate;
+            }
+        }
+        directoryListener.fileDeleted(theLocation, thePath);
+    }
 
-        luceneIndexHandler.crawlingStarts();
+    public void crawlLocations() {
 
         final var theRunner = new Thread(() -> {
+            try {
+                awaitStartup();
+            } catch (final IOException e) {
+                log.error("Cannot crawl without an index", e);
+                return;
+            }
+            luceneIndexHandler.crawlingStarts();
 
             log.info("Starting to crawl");
             locations.values().forEach(theWatcher -> {
@@ -306,15 +420,41 @@ class Backend implements ConfigurationChangeListener {
         if (progressInfo != null) {
             progressInfo.interrupt();
         }
-        luceneIndexHandler.shutdown();
+        try {
+            awaitStartup();
+        } catch (final IOException e) {
+            log.error("Backend did not start", e);
+        }
+        if (luceneIndexHandler != null) {
+            luceneIndexHandler.shutdown();
+        }
+        queryLog.save();
     }
 
-    public QueryResult performQuery(final String aQueryString, final String aBasePath, final Map<String, String> aDrilldownDimensions) {
-        return luceneIndexHandler.performQuery(aQueryString, aBasePath, configuration, aDrilldownDimensions);
+    public QueryResult performQuery(final String aQueryString, final String aBasePath, final Map<String, String> aDrilldownDimensions, final String aCursorMark) {
+        // Only new searches are recorded for the warm-up, not the pages after the first one
+        if (CursorMarkParams.CURSOR_MARK_START.equals(aCursorMark)) {
+            queryLog.record(aQueryString, aDrilldownDimensions);
+        }
+        return luceneIndexHandler.performQuery(aQueryString, aBasePath, configuration, aDrilldownDimensions, aCursorMark);
+    }
+
+    public Suggestion[] findSuggestionTermsFor(final String aClientId, final String aTerm) {
+        if (!isReady()) {
+            return new Suggestion[0];
+        }
+        return luceneIndexHandler.findSuggestionTermsFor(aClientId, aTerm);
+    }
+
+    public List<String> findSimilarFiles(final String aDocumentID) {
+        if (!isReady()) {
+            return Collections.emptyList();
+        }
+        return luceneIndexHandler.findSimilarFiles(aDocumentID);
     }
 
-    public Suggestion[] findSuggestionTermsFor(final String aTerm) {
-        return luceneIndexHandler.findSuggestionTermsFor(aTerm);
+    public boolean isShowSimilarDocuments() {
+        return configuration.isShowSimilarDocuments();
     }
 
     public File getFileOnDiskForDocument(final String aDocumentID) {
@@ -20,8 +20,10 @@ import java.util.ArrayList;
 import java.util.Collections;
 import java.util.HashMap;
 import java.util.HashSet;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.Objects;
 import java.util.Set;
 
 public class Configuration {
@@ -47,6 +49,23 @@ public class Configuration {
             return directory;
         }
 
+        @Override
+        public boolean equals(final Object o) {
+            if (this == o) {
+                return true;
+            }
+            if (o == null || getClass() != o.getClass()) {
+                return false;
+            }
+            final var that = (CrawlLocation) o;
+            return Objects.equals(id, that.id) && Objects.equals(directory, that.directory);
+        }
+
+        @Override
+        public int hashCode() {
+            return Objects.hash(id, directory);
+        }
+
         @Override
         public String toString() {
             return directory.toString();
@@ -68,7 +87,10 @@ public class Configuration {
     private File configDirectory;
     private boolean naturalLanguageProcessing;
     private int facetCount;
+    private Map<String, String> facetDimensions;
     private boolean useTitleAsFilename;
+    private boolean passageIndexing;
+    private boolean foldNearDuplicates;
 
     private Configuration() {
         // Needed by Jackson
@@ -105,7 +127,10 @@ public class Configuration {
         metaDataNameReplacement.put("slide-count", "page-count");
         naturalLanguageProcessing = true;
         facetCount = 10;
+        facetDimensions = new LinkedHashMap<>(FacetRegistry.KNOWN_DIMENSIONS);
         useTitleAsFilename = true;
+        passageIndexing = false;
+        foldNearDuplicates = false;
     }
 
     private Configuration(final Configuration aConfiguration) {
@@ -125,7 +150,10 @@ public class Configuration {
         crawlOnStartup = aConfiguration.crawlOnStartup;
         naturalLanguageProcessing = aConfiguration.naturalLanguageProcessing;
         facetCount = aConfiguration.facetCount;
+        facetDimensions = new LinkedHashMap<>(aConfiguration.facetDimensions);
         useTitleAsFilename = aConfiguration.useTitleAsFilename;
+        passageIndexing = aConfiguration.passageIndexing;
+        foldNearDuplicates = aConfiguration.foldNearDuplicates;
     }
 
     public Configuration(final File aConfigDirectory) {
@@ -137,6 +165,11 @@ public class Configuration {
         return facetCount;
     }
 
+    // Facet fields and their titles, in the order they are shown
+    public Map<String, String> getFacetDimensions() {
+        return Collections.unmodifiableMap(facetDimensions);
+    }
+
     public int getNumberOfSearchResults() {
         return numberOfSearchResults;
     }
@@ -197,6 +230,14 @@ public class Configuration {
         return useTitleAsFilename;
     }
 
+    public boolean isPassageIndexing() {
+        return passageIndexing;
+    }
+
+    public boolean isFoldNearDuplicates() {
+        return foldNearDuplicates;
+    }
+
     public Configuration addLocation(final CrawlLocation aCrawlLocation) {
         final var theConfiguration = new Configuration(this);
         theConfiguration.crawlLocations.add(aCrawlLocation);
@@ -227,6 +268,18 @@ public class Configuration {
         return theConfiguration;
     }
 
+    public Configuration updatePassageIndexing(final boolean aValue) {
+        final var theConfiguration = new Configuration(this);
+        theConfiguration.passageIndexing = aValue;
+        return theConfiguration;
+    }
+
+    public Configuration updateFoldNearDuplicates(final boolean aValue) {
+        final var theConfiguration = new Configuration(this);
+        theConfiguration.foldNearDuplicates = aValue;
+        return theConfiguration;
+    }
+
     public Configuration updateNumberOfSearchResults(final int aValue) {
         final var theConfiguration = new Configuration(this);
         theConfiguration.numberOfSearchResults = aValue;
@@ -239,6 +292,18 @@ public class Configuration {
         return theConfiguration;
     }
 
+    public Configuration enableFacetDimension(final String aField, final String aTitle) {
+        final var theConfiguration = new Configuration(this);
+        theConfiguration.facetDimensions.put(aField, aTitle);
+        return theConfiguration;
+    }
+
+    public Configuration disableFacetDimension(final String aField) {
+        final var theConfiguration = new Configuration(this);
+        theConfiguration.facetDimensions.remove(aField);
+        return theConfiguration;
+    }
+
     public Configuration updateNumberOfSuggestions(final int aValue) {
         final var theConfiguration = new Configuration(this);
         theConfiguration.numberOfSuggestions = aValue;
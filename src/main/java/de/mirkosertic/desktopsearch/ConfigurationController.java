@@ -32,6 +32,7 @@ public class ConfigurationController {
     private static final String CATEGORY_SUGGEST = "Suggestion";
     private static final String CATEGORY_LANGUAGE = "Language analyzers";
     private static final String CATEGORY_FILEFORMATS = "File formats";
+    private static final String CATEGORY_FACETS = "Facets";
 
     @FXML
     ListView indexedDirectories;
@@ -126,6 +127,30 @@ public class ConfigurationController {
                 currentConfiguration = currentConfiguration.updateNaturalLanguageProcessing((Boolean) o);
             }
         });
+        propertySheet.getItems().add(new PropertyEditorItem(boolean.class, CATEGORY_COMMON, "Split large documents into passages", BooleanPropertyEditor.class) {
+
+            @Override
+            public Object getValue() {
+                return currentConfiguration.isPassageIndexing();
+            }
+
+            @Override
+            public void setValue(final Object o) {
+                currentConfiguration = currentConfiguration.updatePassageIndexing((Boolean) o);
+            }
+        });
+        propertySheet.getItems().add(new PropertyEditorItem(boolean.class, CATEGORY_COMMON, "Fold near-duplicate documents", BooleanPropertyEditor.class) {
+
+            @Override
+            public Object getValue() {
+                return currentConfiguration.isFoldNearDuplicates();
+            }
+
+            @Override
+            public void setValue(final Object o) {
+                currentConfiguration = currentConfiguration.updateFoldNearDuplicates((Boolean) o);
+            }
+        });
         propertySheet.getItems().add(new PropertyEditorItem(Integer.class, CATEGORY_COMMON, "Max number of facet entries", SpinnerPropertyEditor.class) {
 
             @Override
@@ -199,6 +224,26 @@ public class ConfigurationController {
             }
         });
 
+        for (final var theDimension : FacetRegistry.KNOWN_DIMENSIONS.entrySet()) {
+
+            propertySheet.getItems().add(new PropertyEditorItem(boolean.class, CATEGORY_FACETS, theDimension.getValue(), BooleanPropertyEditor.class) {
+
+                @Override
+                public Object getValue() {
+                    return currentConfiguration.getFacetDimensions().containsKey(theDimension.getKey());
+                }
+
+                @Override
+                public void setValue(final Object o) {
+                    if ((Boolean) o) {
+                        currentConfiguration = currentConfiguration.enableFacetDimension(theDimension.getKey(), theDimension.getValue());
+                    } else {
+                        currentConfiguration = currentConfiguration.disableFacetDimension(theDimension.getKey());
+                    }
+                }
+            });
+        }
+
         for (final var theLanguage : SupportedLanguage.values()) {
 
             propertySheet.getItems().add(new PropertyEditorItem(boolean.class, CATEGORY_LANGUAGE, theLanguage.toLocale().getDisplayName(), BooleanPropertyEditor.class) {
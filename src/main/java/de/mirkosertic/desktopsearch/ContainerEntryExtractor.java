@@ -0,0 +1,179 @@
+/*
+ * FXDesktopSearch Copyright 2013 Mirko Sertic
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package de.mirkosertic.desktopsearch;
+
+import lombok.extern.slf4j.Slf4j;
+import org.apache.commons.io.input.BoundedInputStream;
+import org.apache.commons.io.input.CloseShieldInputStream;
+import org.apache.commons.io.input.CountingInputStream;
+import org.apache.commons.io.output.StringBuilderWriter;
+import org.apache.tika.exception.TikaException;
+import org.apache.tika.extractor.EmbeddedDocumentExtractor;
+import org.apache.tika.io.TikaInputStream;
+import org.apache.tika.metadata.Metadata;
+import org.apache.tika.parser.ParseContext;
+import org.apache.tika.parser.Parser;
+import org.apache.tika.sax.BodyContentHandler;
+import org.apache.tika.sax.WriteOutContentHandler;
+import org.xml.sax.ContentHandler;
+import org.xml.sax.SAXException;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+// Collects the entries of zip archives and mail attachments as separate documents instead of
+// appending their text to the container. Entries are parsed from the container stream, but parsers
+// needing random access, like the detection of Office documents or the PDF parser, still spool an
+// entry to a temp file. The expanded size limit also bounds these files, and they are deleted once
+// the entry is parsed.
+@Slf4j
+class ContainerEntryExtractor implements EmbeddedDocumentExtractor {
+
+    public static final String ENTRY_SEPARATOR = "!/";
+
+    static final int MAX_DEPTH = 3;
+    static final int MAX_ENTRIES = 1000;
+    static final long MAX_EXPANDED_SIZE = 1024L * 1024 * 256;
+    // All entries are kept in memory until the container is indexed
+    static final int MAX_TEXT_LENGTH = 1024 * 1024 * 20;
+
+    public static class Entry {
+
+        private final String name;
+        private final Metadata metadata;
+        private String text;
+        private long size;
+
+        private Entry(final String aName, final Metadata aMetadata) {
+            name = aName;
+            metadata = aMetadata;
+        }
+
+        public String getName() {
+            return name;
+        }
+
+        public Metadata getMetadata() {
+            return metadata;
+        }
+
+        public String getText() {
+            return text;
+        }
+
+        public long getSize() {
+            return size;
+        }
+    }
+
+    private final Parser parser;
+    private final ParseContext parseContext;
+    private final List<Entry> entries;
+    private final Deque<String> path;
+    private final Set<String> names;
+    private int maxLength;
+    private long expandedSize;
+    private int textLength;
+
+    public ContainerEntryExtractor(final Parser aParser) {
+        parser = aParser;
+        parseContext = new ParseContext();
+        parseContext.set(Parser.class, aParser);
+        parseContext.set(EmbeddedDocumentExtractor.class, this);
+        entries = new ArrayList<>();
+        path = new ArrayDeque<>();
+        names = new HashSet<>();
+    }
+
+    public ParseContext getParseContext() {
+        return parseContext;
+    }
+
+    public void reset(final int aMaxLength) {
+        maxLength = aMaxLength;
+        expandedSize = 0;
+        textLength = 0;
+        entries.clear();
+        path.clear();
+        names.clear();
+    }
+
+    public List<Entry> getEntries() {
+        return entries;
+    }
+
+    @Override
+    public boolean shouldParseEmbedded(final Metadata aMetadata) {
+        return path.size() < MAX_DEPTH && entries.size() < MAX_ENTRIES && expandedSize < MAX_EXPANDED_SIZE && textLength < MAX_TEXT_LENGTH;
+    }
+
+    @Override
+    public void parseEmbedded(final InputStream aStream, final ContentHandler aHandler, final Metadata aMetadata, final boolean aOutputHtml)
+            throws SAXException, IOException {
+
+        var theName = aMetadata.get(Metadata.RESOURCE_NAME_KEY);
+        if (theName == null || theName.isEmpty()) {
+            theName = "entry-" + (entries.size() + 1);
+        }
+        if (!path.isEmpty()) {
+            theName = path.peek() + ENTRY_SEPARATOR + theName;
+        }
+        // Mails often have several attachments of the same name, but every entry needs an id of its own
+        if (!names.add(theName)) {
+            final var theDot = theName.lastIndexOf('.');
+            final var theExtension = theDot > theName.lastIndexOf('/') ? theName.substring(theDot) : "";
+            final var theBaseName = theName.substring(0, theName.length() - theExtension.length());
+            var theNumber = 2;
+            while (!names.add(theBaseName + " (" + theNumber + ")" + theExtension)) {
+                theNumber++;
+            }
+            theName = theBaseName + " (" + theNumber + ")" + theExtension;
+        }
+
+        // The entry is registered before its own children, so the result is in document order
+        final var theEntry = new Entry(theName, aMetadata);
+        entries.add(theEntry);
+
+        final var theText = new StringBuilder();
+        final var theHandler = new WriteOutContentHandler(new StringBuilderWriter(theText), Math.min(maxLength, MAX_TEXT_LENGTH - textLength));
+        final var theCountingStream = new CountingInputStream(
+                new BoundedInputStream(new CloseShieldInputStream(aStream), MAX_EXPANDED_SIZE - expandedSize));
+
+        path.push(theName);
+        try (final var theStream = TikaInputStream.get(theCountingStream)) {
+            parser.parse(theStream, new BodyContentHandler(theHandler), aMetadata, parseContext);
+        } catch (final SAXException e) {
+            if (!theHandler.isWriteLimitReached(e)) {
+                log.warn("Error parsing entry {}", theName, e);
+            }
+        } catch (final TikaException e) {
+            // Broken or encrypted entries must not fail the whole container
+            log.warn("Error parsing entry {}", theName, e);
+        } finally {
+            path.pop();
+            theEntry.text = theText.toString();
+            theEntry.size = theCountingStream.getByteCount();
+            expandedSize += theEntry.size;
+            textLength += theEntry.text.length();
+        }
+    }
+}
@@ -0,0 +1,39 @@
+/*
+ * FXDesktopSearch Copyright 2013 Mirko Sertic
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package de.mirkosertic.desktopsearch;
+
+import org.apache.tika.io.TikaInputStream;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.nio.file.attribute.BasicFileAttributes;
+
+class ContainerTextExtractor implements TextExtractor {
+
+    private final int maxLength;
+
+    public ContainerTextExtractor(final int aMaxLength) {
+        maxLength = aMaxLength;
+    }
+
+    @Override
+    public String extractText(final Path aFile, final BasicFileAttributes aAttributes, final ExtractionContext aContext) throws IOException {
+        // A file backed stream is never spooled to a temp file, even if the detector needs random access
+        try (final var theStream = TikaInputStream.get(aFile)) {
+            return aContext.parseContainer(theStream, maxLength);
+        }
+    }
+}
@@ -37,6 +37,8 @@ public class Content {
     private final List<KeyValuePair> metadata;
     private final String fileContent;
     private final SupportedLanguage language;
+    private final List<Content> children;
+    private boolean container;
 
     public Content(
             final String aFileName, final String aFileContent, final long aFileSize, final long aLastModified, final SupportedLanguage aLanguage) {
@@ -46,6 +48,7 @@ public class Content {
         metadata = new ArrayList<>();
         fileContent = aFileContent;
         language = aLanguage;
+        children = new ArrayList<>();
     }
 
     public String getFileName() {
@@ -75,4 +78,20 @@ public class Content {
     public void addMetaData(final String aKey, final Object aValue) {
         metadata.add(new KeyValuePair(aKey, aValue));
     }
+
+    public boolean isContainer() {
+        return container;
+    }
+
+    public void markAsContainer() {
+        container = true;
+    }
+
+    public List<Content> getChildren() {
+        return children;
+    }
+
+    public void addChild(final Content aChild) {
+        children.add(aChild);
+    }
 }
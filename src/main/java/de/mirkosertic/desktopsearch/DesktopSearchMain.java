@@ -79,7 +79,8 @@ public class DesktopSearchMain extends Application {
         // Create the known preview processors
         final var thePreviewProcessor = new PreviewProcessor();
 
-        // Boot the search backend and set it up for listening to configuration changes
+        // Boot the search backend and set it up for listening to configuration changes. The index loads
+        // in the background, until it is ready the search page shows that it is warming up
         backend = new Backend(theNotifier, configurationManager.getConfiguration(), thePreviewProcessor);
         configurationManager.addChangeListener(backend);
 
@@ -0,0 +1,200 @@
+/*
+ * FXDesktopSearch Copyright 2013 Mirko Sertic
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package de.mirkosertic.desktopsearch;
+
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import lombok.extern.slf4j.Slf4j;
+import org.apache.lucene.index.DocValues;
+import org.apache.lucene.index.IndexReader;
+import org.apache.lucene.index.OrdinalMap;
+import org.apache.lucene.index.SortedSetDocValues;
+import org.apache.lucene.util.LongValues;
+import org.apache.lucene.util.packed.PackedInts;
+import org.apache.solr.common.util.NamedList;
+import org.apache.solr.common.util.SimpleOrderedMap;
+import org.apache.solr.core.AbstractSolrEventListener;
+import org.apache.solr.core.SolrCore;
+import org.apache.solr.handler.component.ResponseBuilder;
+import org.apache.solr.handler.component.SearchComponent;
+import org.apache.solr.search.DocSet;
+import org.apache.solr.search.SolrIndexSearcher;
+import org.apache.solr.util.plugin.SolrCoreAware;
+
+import java.io.IOException;
+import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+
+// Facet counts of string fields straight from their docValues. The global ordinals of a field are built once
+// per searcher and the matching documents are counted into an int[] by ordinal. Large result sets are only
+// sampled, which gives approximate counts, but the same top facets
+@Slf4j
+public class DocValuesFacetComponent extends SearchComponent implements SolrCoreAware {
+
+    public static final String ENABLED_PARAM = "fxfacet";
+    public static final String FIELD_PARAM = "fxfacet.field";
+    public static final String LIMIT_PARAM = "fxfacet.limit";
+    public static final String SAMPLE_PARAM = "fxfacet.sample";
+    public static final String FACETS_RESPONSE = "fxfacet";
+
+    static final int DEFAULT_SAMPLE_SIZE = 100000;
+
+    private final Cache<IndexReader.CacheKey, Map<String, OrdinalMap>> ordinals = CacheBuilder.newBuilder().weakKeys().build();
+    private final Set<String> facetedFields = ConcurrentHashMap.newKeySet();
+
+    @Override
+    public void inform(final SolrCore aCore) {
+        // The fields faceted so far are prepared while a new searcher is warmed up, so the first query does not wait
+        aCore.registerNewSearcherListener(new AbstractSolrEventListener(aCore) {
+            @Override
+            public void newSearcher(final SolrIndexSearcher aNewSearcher, final SolrIndexSearcher aCurrentSearcher) {
+                for (final var theField : facetedFields) {
+                    try {
+                        ordinalsOf(aNewSearcher, theField);
+                    } catch (final IOException e) {
+                        log.warn("Cannot build ordinals of {}", theField, e);
+                    }
+                }
+            }
+        });
+    }
+
+    @Override
+    public void prepare(final ResponseBuilder aResponseBuilder) {
+        if (aResponseBuilder.req.getParams().getBool(ENABLED_PARAM, false)) {
+            aResponseBuilder.setNeedDocSet(true);
+        }
+    }
+
+    private OrdinalMap ordinalsOf(final SolrIndexSearcher aSearcher, final String aField) throws IOException {
+        final var theLeaves = aSearcher.getIndexReader().leaves();
+        final var theValues = new SortedSetDocValues[theLeaves.size()];
+        for (var i = 0; i < theValues.length; i++) {
+            theValues[i] = DocValues.getSortedSet(theLeaves.get(i).reader(), aField);
+        }
+        final var theCacheHelper = aSearcher.getIndexReader().getReaderCacheHelper();
+        if (theCacheHelper == null) {
+            return OrdinalMap.build(null, theValues, PackedInts.DEFAULT);
+        }
+        try {
+            final var theFields = ordinals.get(theCacheHelper.getKey(), ConcurrentHashMap::new);
+            var theResult = theFields.get(aField);
+            if (theResult == null) {
+                theResult = OrdinalMap.build(theCacheHelper.getKey(), theValues, PackedInts.DEFAULT);
+                theFields.put(aField, theResult);
+            }
+            return theResult;
+        } catch (final ExecutionException e) {
+            throw new IOException(e);
+        }
+    }
+
+    private NamedList<Integer> facetsOf(final SolrIndexSearcher aSearcher, final DocSet aDocs, final String aField, final int aLimit,
+            final int aSampleSize) throws IOException {
+        final var theLeaves = aSearcher.getIndexReader().leaves();
+        if (theLeaves.isEmpty()) {
+            return new NamedList<>();
+        }
+        final var theOrdinals = ordinalsOf(aSearcher, aField);
+        final var theCounts = new int[(int) theOrdinals.getValueCount()];
+
+        // Every n-th document of a large result set is counted, and the counts are scaled up
+        final var theStep = Math.max(1, (aDocs.size() + aSampleSize - 1) / aSampleSize);
+        var theLeaf = -1;
+        var theLeafEnd = 0;
+        SortedSetDocValues theValues = null;
+        LongValues theGlobalOrds = null;
+        var theDocNumber = 0;
+        for (final var theDocs = aDocs.iterator(); theDocs.hasNext(); theDocNumber++) {
+            final int theDoc = theDocs.nextDoc();
+            if (theDocNumber % theStep != 0) {
+                continue;
+            }
+            while (theDoc >= theLeafEnd) {
+                theLeaf++;
+                final var theContext = theLeaves.get(theLeaf);
+                theLeafEnd = theContext.docBase + theContext.reader().maxDoc();
+                theValues = DocValues.getSortedSet(theContext.reader(), aField);
+                theGlobalOrds = theOrdinals.getGlobalOrds(theLeaf);
+            }
+            if (theValues.advanceExact(theDoc - theLeaves.get(theLeaf).docBase)) {
+                for (var theOrd = theValues.nextOrd(); theOrd != SortedSetDocValues.NO_MORE_ORDS; theOrd = theValues.nextOrd()) {
+                    theCounts[(int) theGlobalOrds.get(theOrd)]++;
+                }
+            }
+        }
+
+        // Top-k by a bounded heap instead of sorting all ordinals
+        final var theTop = new PriorityQueue<Integer>(aLimit + 1,
+                (a, b) -> theCounts[a] != theCounts[b] ? Integer.compare(theCounts[a], theCounts[b]) : Integer.compare(b, a));
+        for (var i = 0; i < theCounts.length; i++) {
+            if (theCounts[i] > 0 && (theTop.size() < aLimit || theCounts[i] > theCounts[theTop.peek()])) {
+                theTop.add(i);
+                if (theTop.size() > aLimit) {
+                    theTop.poll();
+                }
+            }
+        }
+
+        // Polled from the smallest count, but returned from the largest one
+        final var theTopOrds = new int[theTop.size()];
+        for (var i = theTopOrds.length - 1; i >= 0; i--) {
+            theTopOrds[i] = theTop.poll();
+        }
+        final var theResult = new NamedList<Integer>();
+        for (final var theGlobalOrd : theTopOrds) {
+            final var theSegmentValues = DocValues.getSortedSet(theLeaves.get(theOrdinals.getFirstSegmentNumber(theGlobalOrd)).reader(), aField);
+            final var theTerm = theSegmentValues.lookupOrd(theOrdinals.getFirstSegmentOrd(theGlobalOrd)).utf8ToString();
+            theResult.add(theTerm, theCounts[theGlobalOrd] * theStep);
+        }
+        return theResult;
+    }
+
+    @Override
+    public void process(final ResponseBuilder aResponseBuilder) throws IOException {
+        final var theRequestParams = aResponseBuilder.req.getParams();
+        if (!theRequestParams.getBool(ENABLED_PARAM, false) || aResponseBuilder.getResults() == null) {
+            return;
+        }
+        final var theFields = theRequestParams.getParams(FIELD_PARAM);
+        if (theFields == null) {
+            return;
+        }
+
+        final var theSearcher = aResponseBuilder.req.getSearcher();
+        final var theLimit = theRequestParams.getInt(LIMIT_PARAM, 10);
+        final var theSampleSize = theRequestParams.getInt(SAMPLE_PARAM, DEFAULT_SAMPLE_SIZE);
+        final var theResponse = new SimpleOrderedMap<NamedList<Integer>>();
+        for (final var theField : theFields) {
+            final var theSchemaField = theSearcher.getSchema().getFieldOrNull(theField);
+            if (theSchemaField == null || !theSchemaField.hasDocValues()) {
+                log.warn("Cannot facet {} without docValues", theField);
+                continue;
+            }
+            facetedFields.add(theField);
+            theResponse.add(theField, facetsOf(theSearcher, aResponseBuilder.getResults().docSet, theField, theLimit, theSampleSize));
+        }
+        aResponseBuilder.rsp.add(FACETS_RESPONSE, theResponse);
+    }
+
+    @Override
+    public String getDescription() {
+        return "FXDesktopSearch DocValues Facets";
+    }
+}
@@ -0,0 +1,108 @@
+/*
+ * FXDesktopSearch Copyright 2013 Mirko Sertic
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package de.mirkosertic.desktopsearch;
+
+import org.apache.commons.io.output.StringBuilderWriter;
+import org.apache.tika.exception.TikaException;
+import org.apache.tika.io.TikaInputStream;
+import org.apache.tika.metadata.Metadata;
+import org.apache.tika.parser.AutoDetectParser;
+import org.apache.tika.parser.ParseContext;
+import org.apache.tika.parser.Parser;
+import org.apache.tika.sax.BodyContentHandler;
+import org.apache.tika.sax.WriteOutContentHandler;
+import org.xml.sax.SAXException;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.List;
+
+// Holds everything needed to extract a document, so it can be reused by one indexing worker thread
+class ExtractionContext {
+
+    private static final int MAX_RETAINED_BUFFER_SIZE = 1024 * 1024;
+
+    private final AutoDetectParser parser;
+    private final ParseContext parseContext;
+    private final Metadata metadata;
+    private final MetadataNormalizer metadataNormalizer;
+    private final ContainerEntryExtractor containerEntryExtractor;
+    private StringBuilder textBuffer;
+    private boolean container;
+
+    public ExtractionContext(final MetadataNormalizer aMetadataNormalizer) {
+        parser = new AutoDetectParser();
+        parseContext = new ParseContext();
+        parseContext.set(Parser.class, parser);
+        metadata = new Metadata();
+        metadataNormalizer = aMetadataNormalizer;
+        containerEntryExtractor = new ContainerEntryExtractor(parser);
+        textBuffer = new StringBuilder();
+    }
+
+    public Metadata newMetadata() {
+        for (final var theName : metadata.names()) {
+            metadata.remove(theName);
+        }
+        container = false;
+        return metadata;
+    }
+
+    public Metadata getMetadata() {
+        return metadata;
+    }
+
+    public MetadataNormalizer getMetadataNormalizer() {
+        return metadataNormalizer;
+    }
+
+    public List<ContainerEntryExtractor.Entry> getContainerEntries() {
+        if (container) {
+            return containerEntryExtractor.getEntries();
+        }
+        return null;
+    }
+
+    public String parse(final InputStream aStream, final int aMaxLength) throws IOException {
+        return parse(aStream, aMaxLength, parseContext);
+    }
+
+    public String parseContainer(final InputStream aStream, final int aMaxLength) throws IOException {
+        container = true;
+        containerEntryExtractor.reset(aMaxLength);
+        return parse(aStream, aMaxLength, containerEntryExtractor.getParseContext());
+    }
+
+    private String parse(final InputStream aStream, final int aMaxLength, final ParseContext aParseContext) throws IOException {
+        textBuffer.setLength(0);
+        final var theHandler = new WriteOutContentHandler(new StringBuilderWriter(textBuffer), aMaxLength);
+        try (final var theStream = TikaInputStream.get(aStream)) {
+            parser.parse(theStream, new BodyContentHandler(theHandler), metadata, aParseContext);
+        } catch (final SAXException e) {
+            if (!theHandler.isWriteLimitReached(e)) {
+                throw new IOException("Unexpected SAX processing failure", e);
+            }
+        } catch (final TikaException e) {
+            throw new IOException(e);
+        }
+        final var theResult = textBuffer.toString();
+        // Do not keep huge buffers of single large documents around
+        if (textBuffer.capacity() > MAX_RETAINED_BUFFER_SIZE) {
+            textBuffer = new StringBuilder();
+        }
+        return theResult;
+    }
+}
@@ -15,16 +15,21 @@
  */
 package de.mirkosertic.desktopsearch;
 
+import com.google.common.base.Suppliers;
+
+import java.util.function.Supplier;
+
 public class Facet {
 
     private final String name;
     private final long number;
-    private final String link;
+    private final Supplier<String> link;
 
-    public Facet(final String name, final long number, final String link) {
+    // Links are only rendered for the facets actually shown
+    public Facet(final String name, final long number, final Supplier<String> link) {
         this.name = name;
         this.number = number;
-        this.link = link;
+        this.link = Suppliers.memoize(link::get);
     }
 
     public String getName() {
@@ -36,6 +41,6 @@ public class Facet {
     }
 
     public String getLink() {
-        return link;
+        return link.get();
     }
 }
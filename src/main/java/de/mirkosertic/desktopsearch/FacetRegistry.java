@@ -0,0 +1,180 @@
+/*
+ * FXDesktopSearch Copyright 2013 Mirko Sertic
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package de.mirkosertic.desktopsearch;
+
+import org.apache.solr.client.solrj.response.QueryResponse;
+import org.apache.solr.client.solrj.response.RangeFacet;
+import org.apache.solr.common.util.NamedList;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+// The facet dimensions of the configuration, with their request parameters computed once. Dimensions
+// drilled down to a single value are not computed at all
+class FacetRegistry {
+
+    static final String DATE_PREFIX = "date_";
+    static final String DATE_FACET_START = "1970-01-01T00:00:00Z";
+    static final int DAY_LENGTH = 10;
+
+    static final Map<String, String> KNOWN_DIMENSIONS;
+
+    static {
+        final Map<String, String> theDimensions = new LinkedHashMap<>();
+        theDimensions.put(IndexFields.LANGUAGE, "Language");
+        theDimensions.put("attr_author", "Author");
+        theDimensions.put(DATE_PREFIX + "last-modified", "Last modified");
+        theDimensions.put("attr_" + IndexFields.EXTENSION, "File type");
+        theDimensions.put("attr_entity_LOCATION", "Location");
+        theDimensions.put("attr_entity_PERSON", "Person");
+        theDimensions.put("attr_entity_ORGANIZATION", "Organization");
+        KNOWN_DIMENSIONS = Collections.unmodifiableMap(theDimensions);
+    }
+
+    private final Map<String, String> titles;
+    private final String[] fields;
+    private final String[] dateFields;
+    private final String limit;
+
+    public FacetRegistry(final Configuration aConfiguration) {
+        titles = new LinkedHashMap<>(aConfiguration.getFacetDimensions());
+        fields = titles.keySet().stream().filter(t -> !isDateFacet(t)).toArray(String[]::new);
+        dateFields = titles.keySet().stream().filter(FacetRegistry::isDateFacet).toArray(String[]::new);
+        limit = Integer.toString(aConfiguration.getFacetCount());
+    }
+
+    public static boolean isDateFacet(final String aField) {
+        return aField.startsWith(DATE_PREFIX);
+    }
+
+    public String titleOf(final String aField) {
+        return titles.getOrDefault(aField, aField);
+    }
+
+    private static String labelOf(final String aField, final String aValue) {
+        if (IndexFields.LANGUAGE.equals(aField)) {
+            try {
+                return SupportedLanguage.valueOf(aValue).toLocale().getDisplayName();
+            } catch (final IllegalArgumentException e) {
+                return aValue;
+            }
+        }
+        return aValue;
+    }
+
+    // For queries that only look up documents or suggestions, whatever the request handler defaults are
+    public static void disableFacets(final Map<String, Object> aParams) {
+        aParams.put("facet", "false");
+        aParams.put(DocValuesFacetComponent.ENABLED_PARAM, "false");
+    }
+
+    public void addParams(final Map<String, Object> aParams, final Map<String, String> aDrilldownFields) {
+        final var theDrilldownFields = aDrilldownFields != null ? aDrilldownFields : Collections.<String, String>emptyMap();
+
+        var theFields = fields;
+        if (!theDrilldownFields.isEmpty()) {
+            theFields = titles.keySet().stream().filter(t -> !isDateFacet(t) && !theDrilldownFields.containsKey(t)).toArray(String[]::new);
+        }
+        if (theFields.length > 0) {
+            aParams.put(DocValuesFacetComponent.ENABLED_PARAM, "true");
+            aParams.put(DocValuesFacetComponent.FIELD_PARAM, theFields);
+            aParams.put(DocValuesFacetComponent.LIMIT_PARAM, limit);
+        }
+
+        // Date facets show the years, and the months or days within the year or month drilled down to
+        final List<String> theDateFields = new ArrayList<>();
+        for (final var theField : dateFields) {
+            final var theDrilldown = theDrilldownFields.get(theField);
+            final var theBounds = theDrilldown != null ? QueryOptions.periodBounds(theDrilldown) : null;
+            if (theBounds == null) {
+                aParams.put("f." + theField + ".facet.range.start", DATE_FACET_START);
+                aParams.put("f." + theField + ".facet.range.end", "NOW/YEAR+1YEAR");
+                aParams.put("f." + theField + ".facet.range.gap", "+1YEAR");
+            } else if (theDrilldown.length() < DAY_LENGTH) {
+                aParams.put("f." + theField + ".facet.range.start", theBounds[0]);
+                aParams.put("f." + theField + ".facet.range.end", theBounds[1]);
+                aParams.put("f." + theField + ".facet.range.gap", theDrilldown.length() > 4 ? "+1DAY" : "+1MONTH");
+            } else {
+                continue;
+            }
+            theDateFields.add(theField);
+        }
+        if (!theDateFields.isEmpty()) {
+            aParams.put("facet", "true");
+            // Counted from the docValues of the matching documents instead of one range query per bucket
+            aParams.put("facet.range", theDateFields.toArray(new String[0]));
+            aParams.put("facet.range.method", "dv");
+        }
+    }
+
+    public List<FacetDimension> dimensionsOf(final QueryResponse aQueryResponse, final String aBacklink, final Map<String, String> aDrilldownFields) {
+        final List<FacetDimension> theResult = new ArrayList<>();
+        final var theFields = (NamedList<?>) aQueryResponse.getResponse().get(DocValuesFacetComponent.FACETS_RESPONSE);
+        for (final var theField : titles.keySet()) {
+            final List<Facet> theFacets = isDateFacet(theField)
+                    ? dateFacetsOf(theField, aQueryResponse, aBacklink, aDrilldownFields)
+                    : facetsOf(theField, theFields != null ? (NamedList<?>) theFields.get(theField) : null, aBacklink);
+            // Facetting only makes sense if there is more than one facet
+            if (theFacets.size() > 1) {
+                theResult.add(new FacetDimension(titleOf(theField), theFacets));
+            }
+        }
+        return theResult;
+    }
+
+    private static List<Facet> facetsOf(final String aField, final NamedList<?> aCounts, final String aBacklink) {
+        final List<Facet> theResult = new ArrayList<>();
+        if (aCounts != null) {
+            for (final var theCount : aCounts) {
+                final var theName = theCount.getKey().trim();
+                final var theValue = ((Number) theCount.getValue()).longValue();
+                if (theValue > 0 && !theName.isEmpty()) {
+                    theResult.add(new Facet(labelOf(aField, theName), theValue,
+                            () -> aBacklink + "/" + FacetSearchUtils.urlEncode(FacetSearchUtils.encode(aField, theCount.getKey()))));
+                }
+            }
+        }
+        return theResult;
+    }
+
+    private static List<Facet> dateFacetsOf(final String aField, final QueryResponse aQueryResponse, final String aBacklink,
+            final Map<String, String> aDrilldownFields) {
+        final List<Facet> theResult = new ArrayList<>();
+        if (aQueryResponse.getFacetRanges() == null) {
+            return theResult;
+        }
+        // Years, months or days, depending on what was drilled down to. A drilldown replaces the previous one
+        final var theDrilldown = aDrilldownFields != null ? aDrilldownFields.get(aField) : null;
+        final var thePeriodLength = theDrilldown == null ? 4 : theDrilldown.length() > 4 ? DAY_LENGTH : 7;
+        for (final RangeFacet<?, ?> theRange : aQueryResponse.getFacetRanges()) {
+            if (aField.equals(theRange.getName())) {
+                for (final var theCount : theRange.getCounts()) {
+                    if (theCount.getCount() > 0) {
+                        final var thePeriod = theCount.getValue().substring(0, thePeriodLength);
+                        theResult.add(new Facet(thePeriod, theCount.getCount(), () -> {
+                            final var theBacklink = theDrilldown == null ? aBacklink : FacetSearchUtils.removeDrilldown(aBacklink, aField);
+                            return theBacklink + "/" + FacetSearchUtils.urlEncode(FacetSearchUtils.encode(aField, thePeriod));
+                        }));
+                    }
+                }
+            }
+        }
+        return theResult;
+    }
+}
@@ -15,6 +15,12 @@
  */
 package de.mirkosertic.desktopsearch;
 
+import org.apache.commons.codec.EncoderException;
+import org.apache.commons.codec.net.URLCodec;
+import org.apache.commons.lang3.StringUtils;
+
+import java.net.MalformedURLException;
+import java.net.URL;
 import java.util.Map;
 
 final class FacetSearchUtils {
@@ -26,6 +32,37 @@ final class FacetSearchUtils {
         return aDimension+"="+aValue;
     }
 
+    public static String urlEncode(final String aValue) {
+        final var theURLCodec = new URLCodec();
+        try {
+            return theURLCodec.encode(aValue);
+        } catch (final EncoderException e) {
+            return null;
+        }
+    }
+
+    // The search path without the drilldown of the given field
+    public static String removeDrilldown(final String aPath, final String aFieldName) {
+        try {
+            final var url = new URL(aPath);
+            final var thePaths = StringUtils.split(url.getPath(), "/");
+            final var theResult = new StringBuilder();
+            theResult.append(thePaths[1]);
+            if (thePaths.length > 2) {
+                for (var i = 2; i < thePaths.length; i++) {
+                    final var theFilter = thePaths[i];
+                    if (!theFilter.startsWith(aFieldName + "%3D")) {
+                        theResult.append("/");
+                        theResult.append(theFilter);
+                    }
+                }
+            }
+            return new URL(url.getProtocol(), url.getHost(), url.getPort(), "/search/" + theResult.toString()).toString();
+        } catch (final MalformedURLException e) {
+            throw new IllegalStateException("Cannot happen", e);
+        }
+    }
+
     public static void addToMap(final String aDimensionCriteria, final Map<String, String> aDrilldownDimensions) {
         final var p = aDimensionCriteria.indexOf("=");
         aDrilldownDimensions.put(aDimensionCriteria.substring(0, p), aDimensionCriteria.substring(p + 1));
@@ -0,0 +1,183 @@
+/*
+ * FXDesktopSearch Copyright 2013 Mirko Sertic
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package de.mirkosertic.desktopsearch;
+
+import org.apache.commons.codec.digest.DigestUtils;
+import org.apache.lucene.index.DocValues;
+import org.apache.lucene.index.LeafReaderContext;
+import org.apache.lucene.index.NumericDocValues;
+import org.apache.lucene.index.SortedDocValues;
+import org.apache.lucene.search.ScoreMode;
+import org.apache.lucene.search.SimpleCollector;
+import org.apache.lucene.search.TermInSetQuery;
+import org.apache.lucene.util.BytesRef;
+import org.apache.solr.common.SolrInputDocument;
+import org.apache.solr.core.AbstractSolrEventListener;
+import org.apache.solr.core.SolrCore;
+import org.apache.solr.request.SolrQueryRequest;
+import org.apache.solr.response.SolrQueryResponse;
+import org.apache.solr.search.SolrIndexSearcher;
+import org.apache.solr.update.AddUpdateCommand;
+import org.apache.solr.update.CommitUpdateCommand;
+import org.apache.solr.update.DeleteUpdateCommand;
+import org.apache.solr.update.processor.UpdateRequestProcessor;
+import org.apache.solr.update.processor.UpdateRequestProcessorFactory;
+import org.apache.solr.util.plugin.SolrCoreAware;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Objects;
+import java.util.function.BiConsumer;
+import java.util.stream.Collectors;
+
+// Fields derived from other fields of the same document, computed once inside the update chain
+// instead of by every client. The passages of a file arrive one after another, and share the
+// SimHash and near-duplicate cluster of the whole file
+public class FilesUpdateProcessorFactory extends UpdateRequestProcessorFactory implements SolrCoreAware {
+
+    private final NearDuplicateClusters nearDuplicateClusters = new NearDuplicateClusters();
+
+    @Override
+    public void inform(final SolrCore aCore) {
+        final var theListener = new AbstractSolrEventListener(aCore) {
+            @Override
+            public void newSearcher(final SolrIndexSearcher aNewSearcher, final SolrIndexSearcher aCurrentSearcher) {
+                nearDuplicateClusters.searcherOpened();
+            }
+        };
+        aCore.registerFirstSearcherListener(theListener);
+        aCore.registerNewSearcherListener(theListener);
+    }
+
+    @Override
+    public UpdateRequestProcessor getInstance(final SolrQueryRequest aRequest, final SolrQueryResponse aResponse, final UpdateRequestProcessor aNext) {
+        return new UpdateRequestProcessor(aNext) {
+
+            private final List<AddUpdateCommand> file = new ArrayList<>();
+
+            @Override
+            public void processAdd(final AddUpdateCommand aCommand) throws IOException {
+                final var theDocument = aCommand.getSolrInputDocument();
+                deriveFields(theDocument);
+                if (!file.isEmpty() && !Objects.equals(fileIdOf(file.get(0).getSolrInputDocument()), fileIdOf(theDocument))) {
+                    flush();
+                }
+                // The command is reused by the loader for the next document
+                final var theCommand = new AddUpdateCommand(aCommand.getReq());
+                theCommand.solrDoc = theDocument;
+                theCommand.overwrite = aCommand.overwrite;
+                theCommand.commitWithin = aCommand.commitWithin;
+                file.add(theCommand);
+            }
+
+            private void flush() throws IOException {
+                if (file.isEmpty()) {
+                    return;
+                }
+                final var theContent = file.stream()
+                        .map(t -> t.getSolrInputDocument().getFieldValue(IndexFields.CONTENT))
+                        .filter(Objects::nonNull)
+                        .map(Object::toString)
+                        .collect(Collectors.joining(" "));
+                final var theSimHash = SimHash.of(theContent);
+                // Files too short for a SimHash are a cluster of their own. So every document indexed since
+                // near-duplicate detection exists has a cluster, and the update check can tell older ones
+                final var theCluster = theSimHash != null
+                        ? nearDuplicateClusters.clusterOf(theSimHash, (aBands, aConsumer) -> candidates(aRequest.getSearcher(), aBands, aConsumer))
+                        : fileIdOf(file.get(0).getSolrInputDocument());
+                // Only the first document of a file is a candidate, so every file is found once
+                if (theSimHash != null) {
+                    final var theFirst = file.get(0).getSolrInputDocument();
+                    theFirst.setField(IndexFields.SIMHASH, theSimHash);
+                    theFirst.setField(IndexFields.SIMHASH_BAND, SimHash.bandsOf(theSimHash));
+                }
+                for (final var theCommand : file) {
+                    theCommand.getSolrInputDocument().setField(IndexFields.CLUSTER, theCluster);
+                }
+                for (final var theCommand : file) {
+                    super.processAdd(theCommand);
+                }
+                file.clear();
+            }
+
+            @Override
+            public void processDelete(final DeleteUpdateCommand aCommand) throws IOException {
+                flush();
+                super.processDelete(aCommand);
+            }
+
+            @Override
+            public void processCommit(final CommitUpdateCommand aCommand) throws IOException {
+                flush();
+                super.processCommit(aCommand);
+            }
+
+            @Override
+            public void finish() throws IOException {
+                flush();
+                super.finish();
+            }
+        };
+    }
+
+    private static String fileIdOf(final SolrInputDocument aDocument) {
+        return (String) aDocument.getFieldValue(IndexFields.FILEID);
+    }
+
+    // All documents of the open searcher sharing a band, as any of them might be the closest one. Documents
+    // added since are known to the NearDuplicateClusters
+    private static void candidates(final SolrIndexSearcher aSearcher, final List<String> aBands, final BiConsumer<Long, String> aConsumer) throws IOException {
+        final var theQuery = new TermInSetQuery(IndexFields.SIMHASH_BAND, aBands.stream().map(BytesRef::new).collect(Collectors.toList()));
+        aSearcher.search(theQuery, new SimpleCollector() {
+
+            private NumericDocValues simHashes;
+            private SortedDocValues clusters;
+
+            @Override
+            protected void doSetNextReader(final LeafReaderContext aContext) throws IOException {
+                simHashes = DocValues.getNumeric(aContext.reader(), IndexFields.SIMHASH);
+                clusters = DocValues.getSorted(aContext.reader(), IndexFields.CLUSTER);
+            }
+
+            @Override
+            public void collect(final int aDoc) throws IOException {
+                if (simHashes.advanceExact(aDoc) && clusters.advanceExact(aDoc)) {
+                    aConsumer.accept(simHashes.longValue(), clusters.binaryValue().utf8ToString());
+                }
+            }
+
+            @Override
+            public ScoreMode scoreMode() {
+                return ScoreMode.COMPLETE_NO_SCORES;
+            }
+        });
+    }
+
+    static void deriveFields(final SolrInputDocument aDocument) {
+        // Passages are stored as documents of their own, all belonging to the file they were split from.
+        // Clients know the file and set it, documents without one are files of their own
+        if (!aDocument.containsKey(IndexFields.FILEID)) {
+            aDocument.setField(IndexFields.FILEID, aDocument.getFieldValue(IndexFields.UNIQUEID));
+        }
+
+        // The fingerprint of the indexed text
+        if (!aDocument.containsKey(IndexFields.CONTENTMD5)) {
+            final var theContent = aDocument.getFieldValue(IndexFields.CONTENT);
+            aDocument.setField(IndexFields.CONTENTMD5, DigestUtils.md5Hex(theContent != null ? theContent.toString() : ""));
+        }
+    }
+}
@@ -0,0 +1,62 @@
+/*
+ * FXDesktopSearch Copyright 2013 Mirko Sertic
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package de.mirkosertic.desktopsearch;
+
+import java.util.HashSet;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+// Files indexed as more than one document, as passages or as a container with its entries. Only their
+// parts need a delete by query on update, which reopens the realtime searcher, all other files are
+// overwritten by id. Files found by the update check are remembered until they are indexed again.
+// Files added since the last searcher was opened are not found by the update check yet, so they are
+// remembered until the searcher after the next one is open
+class FilesWithParts {
+
+    private final Set<String> found;
+    private Set<String> added;
+    private Set<String> committing;
+
+    public FilesWithParts() {
+        found = ConcurrentHashMap.newKeySet();
+        added = new HashSet<>();
+        committing = new HashSet<>();
+    }
+
+    public void found(final String aFileName) {
+        found.add(aFileName);
+    }
+
+    // True if the indexed version of the file might have parts the new version replaces
+    public synchronized boolean updated(final String aFileName, final boolean aHasParts) {
+        final var theResult = found.remove(aFileName) | added.contains(aFileName) | committing.contains(aFileName);
+        if (aHasParts) {
+            added.add(aFileName);
+        }
+        return theResult;
+    }
+
+    public synchronized void removed(final String aFileName) {
+        found.remove(aFileName);
+        added.remove(aFileName);
+        committing.remove(aFileName);
+    }
+
+    public synchronized void searcherOpened() {
+        committing = added;
+        added = new HashSet<>();
+    }
+}
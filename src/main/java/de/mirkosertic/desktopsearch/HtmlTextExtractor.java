@@ -0,0 +1,214 @@
+/*
+ * FXDesktopSearch Copyright 2013 Mirko Sertic
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package de.mirkosertic.desktopsearch;
+
+import org.apache.commons.text.StringEscapeUtils;
+import org.apache.tika.metadata.HttpHeaders;
+import org.apache.tika.metadata.Metadata;
+import org.apache.tika.metadata.TikaCoreProperties;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.attribute.BasicFileAttributes;
+
+class HtmlTextExtractor implements TextExtractor {
+
+    private static final int DECLARATION_PREFIX_SIZE = 1024;
+    private static final int MAX_ENTITY_LENGTH = 10;
+    private static final long MARKUP_FACTOR = 4;
+
+    private final int maxLength;
+
+    public HtmlTextExtractor(final int aMaxLength) {
+        maxLength = aMaxLength;
+    }
+
+    @Override
+    public String extractText(final Path aFile, final BasicFileAttributes aAttributes, final ExtractionContext aContext) throws IOException {
+        final var theMetadata = aContext.getMetadata();
+        final var theData = TextDecodingUtils.read(aFile, aAttributes.size(), MARKUP_FACTOR * maxLength);
+        final var theCharset = TextDecodingUtils.detectCharset(theData, declaredCharset(theData));
+
+        theMetadata.set(HttpHeaders.CONTENT_TYPE, "text/html; charset=" + theCharset.name());
+        theMetadata.set(HttpHeaders.CONTENT_ENCODING, theCharset.name());
+
+        // Markup takes up space, so we decode more than the maximum text length and stop scanning once it is reached
+        final var theHtml = TextDecodingUtils.decode(theData, theCharset, (int) Math.min(Integer.MAX_VALUE, MARKUP_FACTOR * maxLength));
+        return stripMarkup(theHtml, theMetadata, maxLength);
+    }
+
+    static Charset declaredCharset(final ByteBuffer aData) {
+        final var thePrefix = new byte[Math.min(DECLARATION_PREFIX_SIZE, aData.remaining())];
+        aData.duplicate().get(thePrefix);
+        final var theDeclaration = new String(thePrefix, StandardCharsets.ISO_8859_1).toLowerCase();
+        final var p = theDeclaration.indexOf("charset=");
+        if (p < 0) {
+            return null;
+        }
+        var theEnd = p + 8;
+        if (theEnd < theDeclaration.length() && (theDeclaration.charAt(theEnd) == '"' || theDeclaration.charAt(theEnd) == '\'')) {
+            theEnd++;
+        }
+        final var theStart = theEnd;
+        while (theEnd < theDeclaration.length()) {
+            final var c = theDeclaration.charAt(theEnd);
+            if (!Character.isLetterOrDigit(c) && c != '-' && c != '_' && c != ':' && c != '.') {
+                break;
+            }
+            theEnd++;
+        }
+        return TextDecodingUtils.charsetForName(theDeclaration.substring(theStart, theEnd));
+    }
+
+    static String stripMarkup(final CharBuffer aHtml, final Metadata aMetadata, final int aMaxLength) {
+        final var theLength = aHtml.limit();
+        final var theResult = new StringBuilder(Math.min(aMaxLength, theLength));
+        var i = 0;
+        while (i < theLength && theResult.length() < aMaxLength) {
+            final var c = aHtml.get(i);
+            if (c == '<') {
+                if (regionMatches(aHtml, i, "<!--")) {
+                    i = indexOf(aHtml, "-->", i + 4) + 3;
+                    continue;
+                }
+                final var theTagEnd = tagEnd(aHtml, i + 1);
+                final var theTagName = tagName(aHtml, i + 1, theTagEnd);
+                i = theTagEnd + 1;
+                if ("script".equals(theTagName) || "style".equals(theTagName)) {
+                    i = skipUntilClosingTag(aHtml, i, theTagName);
+                } else if ("title".equals(theTagName)) {
+                    final var theTitleEnd = indexOf(aHtml, "</", i);
+                    final var theTitle = unescape(aHtml.subSequence(i, Math.min(theTitleEnd, theLength)).toString()).trim();
+                    if (!theTitle.isEmpty()) {
+                        aMetadata.set(TikaCoreProperties.TITLE, theTitle);
+                    }
+                    i = skipUntilClosingTag(aHtml, i, theTagName);
+                }
+                appendWhitespace(theResult);
+            } else if (c == '&') {
+                final var theEntityEnd = entityEnd(aHtml, i + 1);
+                if (theEntityEnd > 0) {
+                    final var theEntity = unescape(aHtml.subSequence(i, theEntityEnd + 1).toString());
+                    if (theEntity.length() == 1 && Character.isSpaceChar(theEntity.charAt(0))) {
+                        appendWhitespace(theResult);
+                    } else {
+                        theResult.append(theEntity);
+                    }
+                    i = theEntityEnd + 1;
+                } else {
+                    theResult.append(c);
+                    i++;
+                }
+            } else if (Character.isWhitespace(c)) {
+                appendWhitespace(theResult);
+                i++;
+            } else {
+                theResult.append(c);
+                i++;
+            }
+        }
+        if (theResult.length() > aMaxLength) {
+            theResult.setLength(aMaxLength);
+        }
+        return theResult.toString().trim();
+    }
+
+    private static String unescape(final String aValue) {
+        return StringEscapeUtils.unescapeHtml4(aValue);
+    }
+
+    private static void appendWhitespace(final StringBuilder aResult) {
+        final var theLength = aResult.length();
+        if (theLength > 0 && aResult.charAt(theLength - 1) != ' ') {
+            aResult.append(' ');
+        }
+    }
+
+    private static boolean regionMatches(final CharBuffer aData, final int aOffset, final String aValue) {
+        if (aOffset + aValue.length() > aData.limit()) {
+            return false;
+        }
+        for (var i = 0; i < aValue.length(); i++) {
+            if (Character.toLowerCase(aData.get(aOffset + i)) != aValue.charAt(i)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static int indexOf(final CharBuffer aData, final String aValue, final int aStart) {
+        for (var i = aStart; i < aData.limit(); i++) {
+            if (regionMatches(aData, i, aValue)) {
+                return i;
+            }
+        }
+        return aData.limit();
+    }
+
+    private static int tagEnd(final CharBuffer aData, final int aStart) {
+        char theQuote = 0;
+        for (var i = aStart; i < aData.limit(); i++) {
+            final var c = aData.get(i);
+            if (theQuote != 0) {
+                if (c == theQuote) {
+                    theQuote = 0;
+                }
+            } else if (c == '"' || c == '\'') {
+                theQuote = c;
+            } else if (c == '>') {
+                return i;
+            }
+        }
+        return aData.limit();
+    }
+
+    private static String tagName(final CharBuffer aData, final int aStart, final int aEnd) {
+        var i = aStart;
+        if (i < aEnd && aData.get(i) == '/') {
+            // Closing tags are only separators
+            return "";
+        }
+        final var theName = new StringBuilder();
+        while (i < aEnd && Character.isLetterOrDigit(aData.get(i))) {
+            theName.append(Character.toLowerCase(aData.get(i)));
+            i++;
+        }
+        return theName.toString();
+    }
+
+    private static int skipUntilClosingTag(final CharBuffer aData, final int aStart, final String aTagName) {
+        final var theClosingTag = indexOf(aData, "</" + aTagName, aStart);
+        return Math.min(aData.limit(), tagEnd(aData, theClosingTag) + 1);
+    }
+
+    private static int entityEnd(final CharBuffer aData, final int aStart) {
+        final var theLimit = Math.min(aData.limit(), aStart + MAX_ENTITY_LENGTH);
+        for (var i = aStart; i < theLimit; i++) {
+            final var c = aData.get(i);
+            if (c == ';') {
+                return i > aStart ? i : -1;
+            }
+            if (!Character.isLetterOrDigit(c) && c != '#') {
+                return -1;
+            }
+        }
+        return -1;
+    }
+}
@@ -0,0 +1,106 @@
+/*
+ * FXDesktopSearch Copyright 2013 Mirko Sertic
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package de.mirkosertic.desktopsearch;
+
+import lombok.extern.slf4j.Slf4j;
+
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.function.LongSupplier;
+
+// Decides how soon added documents become searchable. Single file changes are visible after a second,
+// but while a crawl fills the indexing queue, searchers are reopened rarely and Lucene buffers more
+// documents in RAM, so indexing and merging are not slowed down by many tiny segments
+@Slf4j
+class IndexCommitController {
+
+    enum Mode {
+        INTERACTIVE, BULK
+    }
+
+    static final long BULK_QUEUE_DEPTH = 100;
+    static final long INTERACTIVE_QUEUE_DEPTH = 10;
+    static final int INTERACTIVE_COMMIT_WITHIN = 1000;
+    static final int BULK_COMMIT_WITHIN = 60000;
+    static final double INTERACTIVE_RAM_BUFFER_MB = 32;
+    static final double BULK_RAM_BUFFER_MB = 128;
+    static final long CHECK_INTERVAL = 1000;
+
+    private final SolrEmbedded solrEmbedded;
+    private final ScheduledExecutorService executor;
+    private volatile LongSupplier queueDepth;
+    private volatile Mode mode;
+
+    public IndexCommitController(final SolrEmbedded aSolrEmbedded) {
+        solrEmbedded = aSolrEmbedded;
+        queueDepth = () -> 0;
+        mode = Mode.INTERACTIVE;
+        executor = Executors.newSingleThreadScheduledExecutor(r -> {
+            final var theThread = new Thread(r, "IndexCommitController");
+            theThread.setDaemon(true);
+            return theThread;
+        });
+        executor.scheduleWithFixedDelay(this::check, CHECK_INTERVAL, CHECK_INTERVAL, TimeUnit.MILLISECONDS);
+    }
+
+    // Bulk mode starts with a deep queue, and only ends once it is almost drained, so the mode does not flap
+    static Mode modeFor(final Mode aCurrentMode, final long aQueueDepth) {
+        if (aQueueDepth >= BULK_QUEUE_DEPTH) {
+            return Mode.BULK;
+        }
+        if (aQueueDepth < INTERACTIVE_QUEUE_DEPTH) {
+            return Mode.INTERACTIVE;
+        }
+        return aCurrentMode;
+    }
+
+    public void queueDepthFrom(final LongSupplier aQueueDepth) {
+        queueDepth = aQueueDepth;
+    }
+
+    public Mode mode() {
+        return mode;
+    }
+
+    public int commitWithin() {
+        return mode == Mode.BULK ? BULK_COMMIT_WITHIN : INTERACTIVE_COMMIT_WITHIN;
+    }
+
+    private void check() {
+        final var theMode = modeFor(mode, queueDepth.getAsLong());
+        if (theMode == mode) {
+            return;
+        }
+        mode = theMode;
+        log.info("Switching to {} indexing", theMode);
+        try {
+            if (theMode == Mode.BULK) {
+                solrEmbedded.setRamBufferSize(BULK_RAM_BUFFER_MB);
+            } else {
+                solrEmbedded.setRamBufferSize(INTERACTIVE_RAM_BUFFER_MB);
+                // Everything added in bulk mode is made searchable now instead of waiting for its commitWithin
+                solrEmbedded.solrClient().commit(false, false, true);
+            }
+        } catch (final Exception e) {
+            log.error("Error switching to {} indexing", theMode, e);
+        }
+    }
+
+    public void shutdown() {
+        executor.shutdownNow();
+    }
+}
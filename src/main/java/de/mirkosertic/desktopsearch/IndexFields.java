@@ -24,10 +24,18 @@ public interface IndexFields {
     String UNIQUEID = "id";
     String LANGUAGE = "language";
     String CONTENT = "content";
+    String CONTENT_REVERSED = "content_rev";
+    String CONTENT_NGRAM = "content_ngram";
     String CONTENTMD5 = "contentmd5";
     String FILESIZE = "filesize";
     String LASTMODIFIED = "lastmodified";
     String LOCATIONID = "locationid";
+    String CONTAINERID = "containerid";
+    String FILEID = "fileid";
+    String PASSAGE = "passage";
+    String SIMHASH = "simhash";
+    String SIMHASH_BAND = "simhash_band";
+    String CLUSTER = "cluster";
 
     String EXTENSION = "extension";
 }
\ No newline at end of file
@@ -0,0 +1,179 @@
+/*
+ * FXDesktopSearch Copyright 2013 Mirko Sertic
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package de.mirkosertic.desktopsearch;
+
+import com.sun.management.OperatingSystemMXBean;
+import lombok.extern.slf4j.Slf4j;
+import org.apache.lucene.index.LeafReader;
+import org.apache.solr.client.solrj.request.AbstractUpdateRequest;
+import org.apache.solr.client.solrj.request.UpdateRequest;
+import org.apache.solr.common.params.UpdateParams;
+
+import java.lang.management.ManagementFactory;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Supplier;
+
+// Every reindexed file is a delete plus an add, so over time the index collects small segments and
+// deleted documents. Once nobody searches or indexes and the machine is otherwise quiet, deletes are
+// reclaimed, an excessive number of segments is merged at a throttled rate, and the checksums of new
+// segments are verified.
+// Any search or indexing cancels the steps not yet started
+@Slf4j
+class IndexMaintenanceScheduler {
+
+    static final long CHECK_INTERVAL = 60000;
+    static final long IDLE_TIME = 300000;
+    static final double MAX_CPU_LOAD = 0.5;
+    static final double MAX_DELETED_DOCUMENTS_RATIO = 0.1;
+    // The merge policy keeps about ten segments per size tier, a few dozen for a large index. Only far more
+    // segments than that, left behind by merges throttled or aborted while indexing, are merged by force
+    static final int MAX_SEGMENTS = 100;
+    static final int MERGED_SEGMENTS = 50;
+    static final double FORCE_MERGE_MB_PER_SEC = 20;
+
+    private final SolrEmbedded solrEmbedded;
+    private final Supplier<IndexStatistics.Snapshot> statistics;
+    private final ScheduledExecutorService executor;
+    private final Set<String> verifiedSegments;
+    private volatile long lastActivity;
+    private volatile long maintainedVersion;
+    private volatile boolean cancelled;
+    private volatile String progress;
+
+    public IndexMaintenanceScheduler(final SolrEmbedded aSolrEmbedded, final Supplier<IndexStatistics.Snapshot> aStatistics) {
+        solrEmbedded = aSolrEmbedded;
+        statistics = aStatistics;
+        lastActivity = System.currentTimeMillis();
+        maintainedVersion = -1;
+        verifiedSegments = new HashSet<>();
+        executor = Executors.newSingleThreadScheduledExecutor(r -> {
+            final var theThread = new Thread(r, "IndexMaintenance");
+            theThread.setDaemon(true);
+            theThread.setPriority(Thread.MIN_PRIORITY);
+            return theThread;
+        });
+        executor.scheduleWithFixedDelay(this::check, CHECK_INTERVAL, CHECK_INTERVAL, TimeUnit.MILLISECONDS);
+    }
+
+    // A negative load means the system does not know its CPU load, then only the user activity counts
+    static boolean isIdle(final long aIdleTime, final double aCpuLoad) {
+        return aIdleTime >= IDLE_TIME && aCpuLoad < MAX_CPU_LOAD;
+    }
+
+    static boolean needsMerge(final IndexStatistics.Snapshot aSnapshot) {
+        return aSnapshot.getDeletedDocumentsRatio() > MAX_DELETED_DOCUMENTS_RATIO || aSnapshot.getNumberOfSegments() > MAX_SEGMENTS;
+    }
+
+    public void activity() {
+        lastActivity = System.currentTimeMillis();
+        cancelled = true;
+    }
+
+    // Null if no maintenance is running
+    public String progress() {
+        return progress;
+    }
+
+    private void check() {
+        final var theSnapshot = statistics.get();
+        // Nothing has changed since the last maintenance
+        if (theSnapshot.getSearcherVersion() == maintainedVersion) {
+            return;
+        }
+        // Unlike the load average, the CPU load is also known on Windows
+        final var theSystem = ManagementFactory.getPlatformMXBean(OperatingSystemMXBean.class);
+        if (!isIdle(System.currentTimeMillis() - lastActivity, theSystem.getSystemCpuLoad())) {
+            return;
+        }
+
+        cancelled = false;
+        final var theStart = System.currentTimeMillis();
+        try {
+            if (needsMerge(theSnapshot)) {
+                merge(theSnapshot);
+            }
+            verifyChecksums();
+            if (!cancelled) {
+                maintainedVersion = statistics.get().getSearcherVersion();
+                log.info("Index maintenance finished in {}ms", System.currentTimeMillis() - theStart);
+            } else {
+                log.info("Index maintenance cancelled after {}ms", System.currentTimeMillis() - theStart);
+            }
+        } catch (final Exception e) {
+            log.error("Error during index maintenance", e);
+        } finally {
+            progress = null;
+        }
+    }
+
+    // A merge already running cannot be cancelled, but it is only one step
+    private void merge(final IndexStatistics.Snapshot aSnapshot) throws Exception {
+        solrEmbedded.setForceMergeRate(FORCE_MERGE_MB_PER_SEC);
+        if (!cancelled && aSnapshot.getDeletedDocumentsRatio() > MAX_DELETED_DOCUMENTS_RATIO) {
+            progress = "Index maintenance: reclaiming deleted documents.";
+            final var theRequest = new UpdateRequest();
+            theRequest.setAction(AbstractUpdateRequest.ACTION.COMMIT, true, true);
+            theRequest.setParam(UpdateParams.EXPUNGE_DELETES, "true");
+            theRequest.process(solrEmbedded.solrClient());
+        }
+        if (!cancelled && aSnapshot.getNumberOfSegments() > MAX_SEGMENTS) {
+            progress = "Index maintenance: merging " + aSnapshot.getNumberOfSegments() + " segments.";
+            // Merging also rewrites and compacts the stored fields of the merged segments. The smallest segments
+            // are merged first, so the large ones are mostly left alone
+            solrEmbedded.solrClient().optimize(true, true, MERGED_SEGMENTS);
+        }
+    }
+
+    // Segments never change once written, so only segments not verified since startup are read
+    private void verifyChecksums() throws Exception {
+        solrEmbedded.withSearcher(s -> {
+            final Set<String> theCurrentSegments = new HashSet<>();
+            final List<LeafReader> theNewSegments = new ArrayList<>();
+            for (final var theLeaf : s.getIndexReader().leaves()) {
+                final var theSegmentId = PhraseSuggestionIndex.segmentIdOf(theLeaf.reader());
+                theCurrentSegments.add(theSegmentId);
+                if (theSegmentId == null || !verifiedSegments.contains(theSegmentId)) {
+                    theNewSegments.add(theLeaf.reader());
+                }
+            }
+            verifiedSegments.retainAll(theCurrentSegments);
+            for (var i = 0; i < theNewSegments.size() && !cancelled; i++) {
+                progress = "Index maintenance: verifying segment " + (i + 1) + " of " + theNewSegments.size() + ".";
+                final var theSegment = theNewSegments.get(i);
+                try {
+                    theSegment.checkIntegrity();
+                    final var theSegmentId = PhraseSuggestionIndex.segmentIdOf(theSegment);
+                    if (theSegmentId != null) {
+                        verifiedSegments.add(theSegmentId);
+                    }
+                } catch (final Exception e) {
+                    log.error("Index segment {} is corrupt, please rebuild the index", theSegment, e);
+                }
+            }
+        });
+    }
+
+    public void shutdown() {
+        cancelled = true;
+        executor.shutdownNow();
+    }
+}
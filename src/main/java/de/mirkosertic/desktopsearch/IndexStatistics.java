@@ -0,0 +1,127 @@
+/*
+ * FXDesktopSearch Copyright 2013 Mirko Sertic
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package de.mirkosertic.desktopsearch;
+
+import lombok.extern.slf4j.Slf4j;
+import org.apache.lucene.index.DirectoryReader;
+import org.apache.lucene.index.MultiTerms;
+import org.apache.lucene.index.Term;
+import org.apache.lucene.search.BooleanClause;
+import org.apache.lucene.search.BooleanQuery;
+import org.apache.lucene.search.IndexSearcher;
+import org.apache.lucene.search.MatchAllDocsQuery;
+import org.apache.lucene.search.Query;
+import org.apache.lucene.search.TermQuery;
+import org.apache.lucene.util.BytesRef;
+
+import java.io.IOException;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+
+// Cheap index figures, computed once for every opened searcher and served from memory afterwards
+@Slf4j
+class IndexStatistics {
+
+    public static class Snapshot {
+
+        private final long searcherVersion;
+        private final long numberOfDocuments;
+        private final Map<String, Long> documentsPerLocation;
+        private final int numberOfSegments;
+        private final double deletedDocumentsRatio;
+
+        Snapshot(final long aSearcherVersion, final long aNumberOfDocuments, final Map<String, Long> aDocumentsPerLocation, final int aNumberOfSegments,
+                final double aDeletedDocumentsRatio) {
+            searcherVersion = aSearcherVersion;
+            numberOfDocuments = aNumberOfDocuments;
+            documentsPerLocation = Collections.unmodifiableMap(aDocumentsPerLocation);
+            numberOfSegments = aNumberOfSegments;
+            deletedDocumentsRatio = aDeletedDocumentsRatio;
+        }
+
+        public long getSearcherVersion() {
+            return searcherVersion;
+        }
+
+        public long getNumberOfDocuments() {
+            return numberOfDocuments;
+        }
+
+        public Map<String, Long> getDocumentsPerLocation() {
+            return documentsPerLocation;
+        }
+
+        public int getNumberOfSegments() {
+            return numberOfSegments;
+        }
+
+        // Every reindexed file leaves its old documents behind as deletes until their segment is merged
+        public double getDeletedDocumentsRatio() {
+            return deletedDocumentsRatio;
+        }
+    }
+
+    private volatile Snapshot current;
+
+    public IndexStatistics() {
+        current = new Snapshot(-1, 0, Collections.emptyMap(), 0, 0);
+    }
+
+    // Additional passages of a file are not counted, so the figures match the number of files
+    public void searcherOpened(final DirectoryReader aReader, final Query aAdditionalPassages) throws IOException {
+        final var theVersion = aReader.getVersion();
+        if (theVersion <= current.searcherVersion) {
+            return;
+        }
+
+        final var theSearcher = new IndexSearcher(aReader);
+        final var theDocuments = theSearcher.count(filesOf(new MatchAllDocsQuery(), aAdditionalPassages));
+        final Map<String, Long> thePerLocation = new HashMap<>();
+        final var theLocations = MultiTerms.getTerms(aReader, IndexFields.LOCATIONID);
+        if (theLocations != null) {
+            final var theIterator = theLocations.iterator();
+            for (BytesRef theTerm = theIterator.next(); theTerm != null; theTerm = theIterator.next()) {
+                final var theQuery = new TermQuery(new Term(IndexFields.LOCATIONID, BytesRef.deepCopyOf(theTerm)));
+                final var theCount = theSearcher.count(filesOf(theQuery, aAdditionalPassages));
+                if (theCount > 0) {
+                    thePerLocation.put(theTerm.utf8ToString(), (long) theCount);
+                }
+            }
+        }
+        final var theDeletedRatio = aReader.maxDoc() > 0 ? (double) aReader.numDeletedDocs() / aReader.maxDoc() : 0;
+        final var theSnapshot = new Snapshot(theVersion, theDocuments, thePerLocation, aReader.leaves().size(), theDeletedRatio);
+
+        synchronized (this) {
+            if (theVersion > current.searcherVersion) {
+                current = theSnapshot;
+            }
+        }
+        log.debug("Index version {} has {} documents in {} segments, per location {}", theVersion, theDocuments,
+                theSnapshot.numberOfSegments, thePerLocation);
+    }
+
+    private static Query filesOf(final Query aQuery, final Query aAdditionalPassages) {
+        final var theResult = new BooleanQuery.Builder();
+        theResult.add(aQuery, BooleanClause.Occur.FILTER);
+        theResult.add(aAdditionalPassages, BooleanClause.Occur.MUST_NOT);
+        return theResult.build();
+    }
+
+    public Snapshot current() {
+        return current;
+    }
+}
@@ -17,93 +17,160 @@ package de.mirkosertic.desktopsearch;
 
 import com.google.common.collect.Lists;
 import lombok.extern.slf4j.Slf4j;
-import org.apache.commons.codec.EncoderException;
-import org.apache.commons.codec.digest.DigestUtils;
-import org.apache.commons.codec.net.URLCodec;
 import org.apache.commons.lang3.StringUtils;
 import org.apache.commons.text.StringEscapeUtils;
 import org.apache.solr.client.solrj.SolrClient;
-import org.apache.solr.client.solrj.SolrQuery;
-import org.apache.solr.client.solrj.SolrServerException;
-import org.apache.solr.client.solrj.response.QueryResponse;
 import org.apache.solr.client.solrj.util.ClientUtils;
 import org.apache.solr.common.SolrDocument;
 import org.apache.solr.common.SolrInputDocument;
+import org.apache.solr.common.params.CursorMarkParams;
 import org.apache.solr.common.util.NamedList;
 import org.apache.tika.metadata.DublinCore;
 import org.apache.tika.metadata.Metadata;
 import org.apache.tika.metadata.OfficeOpenXMLCore;
 import org.apache.tika.metadata.PDF;
 import org.apache.tika.metadata.TikaCoreProperties;
-import org.apache.tika.utils.DateUtils;
 
 import java.io.File;
 import java.io.IOException;
-import java.net.MalformedURLException;
-import java.net.URL;
 import java.util.ArrayList;
-import java.util.Calendar;
 import java.util.Date;
-import java.util.GregorianCalendar;
 import java.util.HashMap;
+import java.util.HashSet;
 import java.util.List;
-import java.util.Locale;
 import java.util.Map;
-import java.util.function.Function;
+import java.util.Set;
+import java.util.function.Consumer;
+import java.util.function.LongSupplier;
+import java.util.function.Supplier;
+import java.util.stream.Collectors;
 
 @Slf4j
 class LuceneIndexHandler {
 
     private static final int NUMBER_OF_FRAGMENTS = 5;
 
-    private final Map<String, String> facetFieldToTitle;
-    private final Configuration configuration;
+    private volatile FacetRegistry facetRegistry;
+    private volatile Configuration configuration;
     private final PreviewProcessor previewProcessor;
     private final SolrEmbedded solrEmbedded;
     private final SolrClient solrClient;
-
-    public LuceneIndexHandler(final Configuration aConfiguration, final PreviewProcessor aPreviewProcessor) throws IOException {
+    private final SuggestionService suggestionService;
+    private final IndexStatistics indexStatistics;
+    private final ResultValidator resultValidator;
+    private final QueryResultCache queryResultCache;
+    private final SimilarDocuments similarDocuments;
+    private final IndexCommitController commitController;
+    private final IndexMaintenanceScheduler maintenanceScheduler;
+    private final FilesWithParts filesWithParts;
+
+    public LuceneIndexHandler(final Configuration aConfiguration, final PreviewProcessor aPreviewProcessor, final Consumer<File> aStaleFileHandler) throws IOException {
         previewProcessor = aPreviewProcessor;
         configuration = aConfiguration;
-        facetFieldToTitle = new HashMap<>();
-        facetFieldToTitle.put(IndexFields.LANGUAGE, "Language");
-        facetFieldToTitle.put("attr_author", "Author");
-        facetFieldToTitle.put("attr_last-modified-year", "Last modified");
-        facetFieldToTitle.put("attr_" + IndexFields.EXTENSION, "File type");
-        facetFieldToTitle.put("attr_entity_LOCATION", "Location");
-        facetFieldToTitle.put("attr_entity_PERSON", "Person");
-        facetFieldToTitle.put("attr_entity_ORGANIZATION", "Organization");
+        facetRegistry = new FacetRegistry(aConfiguration);
 
         final var theIndexDirectory = new File(aConfiguration.getConfigDirectory(), "index");
         theIndexDirectory.mkdirs();
 
         solrEmbedded = new SolrEmbedded(new SolrEmbedded.Config(theIndexDirectory));
         solrClient = solrEmbedded.solrClient();
-    }
+        commitController = new IndexCommitController(solrEmbedded);
+
+        suggestionService = new SuggestionService(this::lookupSuggestions);
+        solrEmbedded.addSearcherListener(s -> suggestionService.searcherOpened(s.getIndexReader().getVersion()));
+
+        indexStatistics = new IndexStatistics();
+        solrEmbedded.addSearcherListener(s -> {
+            try {
+                final var thePassage = s.getSchema().getField(IndexFields.PASSAGE);
+                indexStatistics.searcherOpened(s.getIndexReader(), thePassage.getType().getRangeQuery(null, thePassage, "1", null, true, true));
+            } catch (final IOException e) {
+                log.error("Cannot compute index statistics", e);
+            }
+        });
 
-    private String[] facetFields() {
-        final var result = new String[facetFieldToTitle.size()];
-        var i=0;
-        for (final var field : facetFieldToTitle.keySet()) {
-            result[i++] = field;
-        }
-        return result;
+        filesWithParts = new FilesWithParts();
+        solrEmbedded.addSearcherListener(s -> filesWithParts.searcherOpened());
+
+        maintenanceScheduler = new IndexMaintenanceScheduler(solrEmbedded, indexStatistics::current);
+
+        resultValidator = new ResultValidator(aStaleFileHandler);
+
+        queryResultCache = new QueryResultCache();
+        solrEmbedded.addSearcherListener(s -> queryResultCache.searcherOpened(s.getIndexReader().getVersion()));
+
+        similarDocuments = new SimilarDocuments(solrClient, aConfiguration);
+        solrEmbedded.addSearcherListener(s -> similarDocuments.searcherOpened(s.getIndexReader().getVersion()));
     }
 
     public void crawlingStarts() {
     }
 
     public void addToIndex(final String aLocationId, final Content aContent) throws IOException {
+        maintenanceScheduler.activity();
+
+        final List<SolrInputDocument> theDocuments = new ArrayList<>();
+        addDocuments(theDocuments, aLocationId, aContent, null);
+        for (final var theChild : aContent.getChildren()) {
+            addDocuments(theDocuments, aLocationId, theChild, aContent.getFileName());
+        }
+
+        try {
+            // Entries might have been removed from the container since the last run, and a document might
+            // now consist of less passages, or of none at all after passage indexing was switched off.
+            // A delete by query reopens the realtime searcher, so files of a single document are only overwritten
+            final var theReplacesParts = filesWithParts.updated(aContent.getFileName(), theDocuments.size() > 1);
+            if (theReplacesParts || !aContent.getChildren().isEmpty()) {
+                solrClient.deleteByQuery(documentsOf(aContent.getFileName()), commitController.commitWithin());
+            }
+            solrClient.add(theDocuments, commitController.commitWithin());
+        } catch (final Exception e) {
+            throw new IOException(e);
+        }
+    }
+
+    private String documentsOf(final String aFileName) {
+        final var theEscaped = ClientUtils.escapeQueryChars(aFileName);
+        return IndexFields.FILEID + ":" + theEscaped + " OR " + IndexFields.CONTAINERID + ":" + theEscaped;
+    }
+
+    private void addDocuments(final List<SolrInputDocument> aDocuments, final String aLocationId, final Content aContent, final String aContainerId) throws IOException {
+        // The fingerprint, SimHash and near-duplicate cluster are derived by the FilesUpdateProcessorFactory
+        final var theDocument = newDocument(aLocationId, aContent);
+        if (aContainerId != null) {
+            theDocument.setField(IndexFields.CONTAINERID, aContainerId);
+        }
+
+        if (!configuration.isPassageIndexing()) {
+            theDocument.setField(IndexFields.CONTENT, aContent.getFileContent());
+            aDocuments.add(theDocument);
+            return;
+        }
+
+        // Every passage carries all fields of the file, so filters and facets still work after collapsing.
+        // The first passage keeps the file name as id, so update checks still find it
+        final var thePassages = PassageSplitter.split(aContent.getFileContent());
+        for (var i = 0; i < thePassages.size(); i++) {
+            final var thePassage = i == 0 ? theDocument : theDocument.deepCopy();
+            if (i > 0) {
+                thePassage.setField(IndexFields.UNIQUEID, aContent.getFileName() + PassageSplitter.PASSAGE_SEPARATOR + i);
+            }
+            thePassage.setField(IndexFields.PASSAGE, Long.toString(i));
+            thePassage.setField(IndexFields.CONTENT, thePassages.get(i));
+            aDocuments.add(thePassage);
+        }
+    }
+
+    private SolrInputDocument newDocument(final String aLocationId, final Content aContent) {
 
         final var theLanguage = aContent.getLanguage();
 
         final var theDocument = new SolrInputDocument();
         theDocument.setField(IndexFields.UNIQUEID, aContent.getFileName());
+        theDocument.setField(IndexFields.FILEID, aContent.getFileName());
         theDocument.setField(IndexFields.LOCATIONID, aLocationId);
-        theDocument.setField(IndexFields.CONTENTMD5, DigestUtils.md5Hex(aContent.getFileContent()));
-        theDocument.setField(IndexFields.LOCATIONID, aLocationId);
-        theDocument.setField(IndexFields.FILESIZE, Long.toString(aContent.getFileSize()));
-        theDocument.setField(IndexFields.LASTMODIFIED, Long.toString(aContent.getLastModified()));
+        theDocument.setField(IndexFields.FILESIZE, aContent.getFileSize());
+        theDocument.setField(IndexFields.LASTMODIFIED, new Date(aContent.getLastModified()));
         theDocument.setField(IndexFields.LANGUAGE, theLanguage.name());
 
         aContent.getMetadata().forEach(theEntry -> {
@@ -120,60 +187,64 @@ class LuceneIndexHandler {
                     theDocument.setField("attr_" + theEntry.key, theList);
                 }
                 if (theValue instanceof Date) {
-                    final var theDateValue = (Date) theValue;
-                    final var theCalendar = GregorianCalendar.getInstance(DateUtils.UTC, Locale.US);
-                    theCalendar.setTime(theDateValue);
-
-                    // Full-Path
-                    {
-                        final var thePathInfo = String.format(
-                                "%04d/%02d/%02d",
-                                theCalendar.get(Calendar.YEAR),
-                                theCalendar.get(Calendar.MONTH) + 1,
-                                theCalendar.get(Calendar.DAY_OF_MONTH));
-
-                        theDocument.setField("attr_" + theEntry.key+"-year-month-day", thePathInfo);
-                    }
-                    // Year
-                    {
-                        final var thePathInfo = String.format(
-                                "%04d",
-                                theCalendar.get(Calendar.YEAR));
-
-                        theDocument.setField("attr_" + theEntry.key+"-year", thePathInfo);
-                    }
-                    // Year-month
-                    {
-                        final var thePathInfo = String.format(
-                                "%04d/%02d",
-                                theCalendar.get(Calendar.YEAR),
-                                theCalendar.get(Calendar.MONTH) + 1);
-
-                        theDocument.setField("attr_" + theEntry.key+"-year-month", thePathInfo);
-                    }
-
+                    // Faceted by year, month and day with range facets on the one date field
+                    theDocument.setField(FacetRegistry.DATE_PREFIX + theEntry.key, theValue);
                 }
             }
         });
 
-        theDocument.setField(IndexFields.CONTENT, aContent.getFileContent());
+        return theDocument;
+    }
 
+    public void removeFromIndex(final String aFileName) throws IOException {
+        maintenanceScheduler.activity();
+        filesWithParts.removed(aFileName);
         try {
-            solrClient.add(theDocument);
+            solrClient.deleteById(aFileName, commitController.commitWithin());
+            solrClient.deleteByQuery(documentsOf(aFileName), commitController.commitWithin());
         } catch (final Exception e) {
             throw new IOException(e);
         }
     }
 
-    public void removeFromIndex(final String aFileName) throws IOException {
+    // Settings apply right away, without reopening the index. Documents indexed with other passage or
+    // near-duplicate settings are found by the update check of the next crawl
+    public void configurationUpdated(final Configuration aConfiguration) {
+        configuration = aConfiguration;
+        facetRegistry = new FacetRegistry(aConfiguration);
+        suggestionService.configurationUpdated();
+        similarDocuments.configurationUpdated(aConfiguration);
+        queryResultCache.invalidateAll();
+    }
+
+    // Removes everything indexed from a crawl location that is no longer configured
+    public void removeLocation(final String aLocationId) throws IOException {
+        maintenanceScheduler.activity();
         try {
-            solrClient.deleteById(aFileName);
+            solrClient.deleteByQuery(IndexFields.LOCATIONID + ":" + ClientUtils.escapeQueryChars(aLocationId), commitController.commitWithin());
         } catch (final Exception e) {
             throw new IOException(e);
         }
     }
 
+    // The deeper the indexing queue, the less often new documents are made searchable
+    public void queueDepthFrom(final LongSupplier aQueueDepth) {
+        commitController.queueDepthFrom(aQueueDepth);
+    }
+
+    public boolean isBulkIndexing() {
+        return commitController.mode() == IndexCommitController.Mode.BULK;
+    }
+
+    // Null if no index maintenance is running
+    public String maintenanceProgress() {
+        return maintenanceScheduler.progress();
+    }
+
     public void shutdown() {
+        maintenanceScheduler.shutdown();
+        commitController.shutdown();
+        resultValidator.shutdown();
         try {
             solrEmbedded.shutdown();
         } catch (final Exception e) {
@@ -184,7 +255,13 @@ class LuceneIndexHandler {
     public UpdateCheckResult checkIfModified(final String aFilename, final long aLastModified) throws IOException {
 
         final Map<String, Object> theParams = new HashMap<>();
-        theParams.put("q", IndexFields.UNIQUEID + ":" + ClientUtils.escapeQueryChars(aFilename));
+        // The document of the file scores highest, its passages and container entries are only counted
+        final var theEscaped = ClientUtils.escapeQueryChars(aFilename);
+        theParams.put("q", IndexFields.UNIQUEID + ":" + theEscaped + "^=2 OR " + IndexFields.FILEID + ":" + theEscaped + "^=1 OR "
+                + IndexFields.CONTAINERID + ":" + theEscaped + "^=1");
+        theParams.put("rows", "1");
+        theParams.put("fl", IndexFields.UNIQUEID + "," + IndexFields.LASTMODIFIED + "," + IndexFields.PASSAGE + "," + IndexFields.CLUSTER);
+        FacetRegistry.disableFacets(theParams);
 
         try {
             final var theQueryResponse = solrClient.query(new SearchMapParams(theParams));
@@ -193,34 +270,39 @@ class LuceneIndexHandler {
                 return UpdateCheckResult.UPDATED;
             }
             final var theDocument = theQueryResponse.getResults().get(0);
-
-            final long theStoredLastModified = Long.valueOf((String) theDocument.getFieldValue(IndexFields.LASTMODIFIED));
-            if (theStoredLastModified != aLastModified) {
-                return UpdateCheckResult.UPDATED;
+            if (!isModified(aFilename, aLastModified, theDocument)) {
+                return UpdateCheckResult.UNMODIFIED;
+            }
+            // The parts of the indexed version are deleted when the file is indexed again
+            if (theQueryResponse.getResults().getNumFound() > 1) {
+                filesWithParts.found(aFilename);
             }
-            return UpdateCheckResult.UNMODIFIED;
+            return UpdateCheckResult.UPDATED;
         } catch (final Exception e) {
             throw new IOException(e);
         }
     }
 
-    private String encode(final String aValue) {
-        final var theURLCodec = new URLCodec();
-        try {
-            return theURLCodec.encode(aValue);
-        } catch (final EncoderException e) {
-            return null;
+    private boolean isModified(final String aFilename, final long aLastModified, final SolrDocument aDocument) {
+        if (!aFilename.equals(aDocument.getFieldValue(IndexFields.UNIQUEID))) {
+            // Only parts of the file are in the index
+            return true;
+        }
+        final var theStoredLastModified = ((Date) aDocument.getFieldValue(IndexFields.LASTMODIFIED)).getTime();
+        if (theStoredLastModified != aLastModified) {
+            return true;
         }
+        // Passages and clusters are computed at index time, so documents indexed with other settings are indexed again
+        return configuration.isPassageIndexing() != (aDocument.getFieldValue(IndexFields.PASSAGE) != null)
+                || configuration.isFoldNearDuplicates() && aDocument.getFieldValue(IndexFields.CLUSTER) == null;
     }
 
-    private long indexSize() throws IOException, SolrServerException {
-        final var q = new SolrQuery("*:*");
-        q.setRows(0);  // don't actually request any data
-        final var theResponse = solrClient.query(q);
-        if (theResponse.getResults() != null) {
-            return theResponse.getResults().getNumFound();
+    private String fileIdOf(final SolrDocument aDocument) {
+        final var theFileId = (String) aDocument.getFieldValue(IndexFields.FILEID);
+        if (theFileId != null) {
+            return theFileId;
         }
-        return 0;
+        return (String) aDocument.getFieldValue(IndexFields.UNIQUEID);
     }
 
     private String getOrDefault(SolrDocument document, String aFieldname, String aDefault) {
@@ -245,58 +327,116 @@ class LuceneIndexHandler {
         return aDefault;
     }
 
-    public QueryResult performQuery(final String aQueryString, final String aBasePath, final Configuration aConfiguration, final Map<String, String> aDrilldownFields) {
+    // The Solr request of a search, also replayed to warm up new searchers
+    private Map<String, Object> searchParams(final String aQueryString, final Configuration aConfiguration, final Map<String, String> aDrilldownFields,
+            final String aCursorMark) {
+        final var theOptions = QueryOptions.parse(aQueryString);
 
         final Map<String, Object> theParams = new HashMap<>();
-        theParams.put("defType", "google");
-        theParams.put("q", aQueryString);
+        if (theOptions.getQueryString().isEmpty()) {
+            // Only filters were given, so everything within them is found
+            theParams.put("q", "*:*");
+        } else {
+            theParams.put("defType", "google");
+            theParams.put("q", theOptions.getQueryString());
+        }
         theParams.put("fl", "*,score");
         theParams.put("rows", Integer.toString(configuration.getNumberOfSearchResults()));
-        theParams.put("facet", "true");
-        theParams.put("facet.field", facetFields());
-        theParams.put("facet.limit", Integer.toString(configuration.getFacetCount()));
+        // The id breaks ties between equal sort values, so the cursor walks a stable order
+        theParams.put("sort", theOptions.getSort());
+        theParams.put(CursorMarkParams.CURSOR_MARK_PARAM, aCursorMark);
+        // Facets are only shown with the first page
+        final var theFirstPage = CursorMarkParams.CURSOR_MARK_START.equals(aCursorMark);
+        if (theFirstPage) {
+            facetRegistry.addParams(theParams, aDrilldownFields);
+        }
         theParams.put("hl", "true");
         theParams.put("hl.method", "unified");
         theParams.put("hl.fl", IndexFields.CONTENT);
         theParams.put("hl.snippets", Integer.toString(NUMBER_OF_FRAGMENTS));
         theParams.put("hl.fragsize", "100");
-
-        final List<QueryFilter> activeFilters = new ArrayList<>();
-
+        // Wildcards routed to the copy fields only match there, so terms are highlighted by what the query reports
+        theParams.put("hl.weightMatches", "false");
+
+        final List<String> theFilters = new ArrayList<>(theOptions.getFilterQueries());
+        if (aConfiguration.isFoldNearDuplicates()) {
+            // Only the best matching version of near-duplicate files is returned. All passages of a file share its cluster
+            theFilters.add("{!collapse field=" + IndexFields.CLUSTER + " nullPolicy=expand}");
+        } else if (aConfiguration.isPassageIndexing()) {
+            // Only the best matching passage of every file is returned and highlighted
+            theFilters.add("{!collapse field=" + IndexFields.FILEID + " nullPolicy=expand}");
+        }
         if (aDrilldownFields != null) {
-            final List<String> theFilters = new ArrayList<>();
             for (final var theField : aDrilldownFields.entrySet()) {
-                theFilters.add(theField.getKey()+":"+ClientUtils.escapeQueryChars(theField.getValue()));
-                activeFilters.add(new QueryFilter(facetFieldToTitle.get(theField.getKey()) + " : " + theField.getValue(), filterFacet(aBasePath, theField.getKey())));
-            }
-            if (!theFilters.isEmpty()) {
-                theParams.put("fq", theFilters.toArray(new String[theFilters.size()]));
+                if (FacetRegistry.isDateFacet(theField.getKey())) {
+                    final var theFilter = QueryOptions.periodFilter(theField.getKey(), theField.getValue());
+                    if (theFilter == null) {
+                        continue;
+                    }
+                    theFilters.add(theFilter);
+                } else {
+                    theFilters.add(theField.getKey() + ":" + ClientUtils.escapeQueryChars(theField.getValue()));
+                }
             }
         }
+        if (!theFilters.isEmpty()) {
+            theParams.put("fq", theFilters.toArray(new String[theFilters.size()]));
+        }
+
+        return theParams;
+    }
 
-        if (aConfiguration.isShowSimilarDocuments()) {
-            theParams.put("mlt", "true");
-            theParams.put("mlt.count", "5");
-            theParams.put("mlt.fl", IndexFields.CONTENT);
+    // Replays the given searches against every new searcher, without highlighting, as that is not cached anyway
+    public void warmUpWith(final Supplier<List<QueryLog.Entry>> aQueries) {
+        solrEmbedded.setWarmupQueries(() -> aQueries.get().stream().map(t -> {
+            final var theParams = searchParams(t.getQueryString(), configuration, t.getDrilldownFields(), CursorMarkParams.CURSOR_MARK_START);
+            theParams.put("hl", "false");
+            return theParams;
+        }).collect(Collectors.toList()));
+    }
+
+    // Pages after the first one are addressed by the cursor mark of the previous page
+    public QueryResult performQuery(final String aQueryString, final String aBasePath, final Configuration aConfiguration, final Map<String, String> aDrilldownFields,
+            final String aCursorMark) {
+        maintenanceScheduler.activity();
+
+        final var theStartTime = System.currentTimeMillis();
+        final var theCacheKey = new QueryResultCache.Key(aQueryString, aBasePath, aDrilldownFields, aCursorMark);
+        final var theCachedResult = queryResultCache.get(theCacheKey);
+        if (theCachedResult != null) {
+            return theCachedResult.withElapsedTime(System.currentTimeMillis() - theStartTime);
+        }
+
+        final var theParams = searchParams(aQueryString, aConfiguration, aDrilldownFields, aCursorMark);
+
+        final List<QueryFilter> activeFilters = new ArrayList<>();
+        if (aDrilldownFields != null) {
+            for (final var theField : aDrilldownFields.entrySet()) {
+                if (!FacetRegistry.isDateFacet(theField.getKey()) || QueryOptions.periodFilter(theField.getKey(), theField.getValue()) != null) {
+                    activeFilters.add(new QueryFilter(facetRegistry.titleOf(theField.getKey()) + " : " + theField.getValue(),
+                            FacetSearchUtils.removeDrilldown(aBasePath, theField.getKey())));
+                }
+            }
         }
 
         try {
-            final var theStartTime = System.currentTimeMillis();
             final var theQueryResponse = solrClient.query(new SearchMapParams(theParams));
 
             final List<QueryResultDocument> theDocuments = new ArrayList<>();
+            final Set<File> theFilesOnDisk = new HashSet<>();
             if (theQueryResponse.getResults() != null) {
                 for (var i = 0; i < theQueryResponse.getResults().size(); i++) {
                     final var theSolrDocument = theQueryResponse.getResults().get(i);
 
-                    final var theFileName = (String) theSolrDocument.getFieldValue(IndexFields.UNIQUEID);
-                    final long theStoredLastModified = Long.valueOf((String) theSolrDocument.getFieldValue(IndexFields.LASTMODIFIED));
+                    final var theDocumentId = (String) theSolrDocument.getFieldValue(IndexFields.UNIQUEID);
+                    final var theFileName = fileIdOf(theSolrDocument);
+                    final var theStoredLastModified = ((Date) theSolrDocument.getFieldValue(IndexFields.LASTMODIFIED)).getTime();
 
                     final var theNormalizedScore = (int) (
                             ((float) theSolrDocument.getFieldValue("score")) / theQueryResponse.getResults().getMaxScore() * 5);
 
                     final var theHighlight = new StringBuilder();
-                    final var theHighlightPhrases = theQueryResponse.getHighlighting().get(theFileName);
+                    final var theHighlightPhrases = theQueryResponse.getHighlighting().get(theDocumentId);
                     if (theHighlightPhrases != null) {
                         final var theContentSpans = theHighlightPhrases.get(IndexFields.CONTENT);
                         if (theContentSpans != null) {
@@ -311,120 +451,80 @@ class LuceneIndexHandler {
                         }
                     }
 
-                    final var theFileOnDisk = new File(theFileName);
-                    if (theFileOnDisk.exists()) {
+                    // Archive entries and attachments are opened using their container
+                    final var theContainerId = (String) theSolrDocument.getFieldValue(IndexFields.CONTAINERID);
+                    final var theFileOnDisk = new File(theContainerId != null ? theContainerId : theFileName);
+                    theFilesOnDisk.add(theFileOnDisk);
 
-                        final var thePreviewAvailable = previewProcessor.previewAvailableFor(theFileOnDisk);
+                    final var thePreviewAvailable = previewProcessor.previewAvailableFor(theFileOnDisk);
 
-                        // Try to extract the title from the metadata
-                        var theTitle = theFileName;
-                        if (aConfiguration.isUseTitleAsFilename()) {
-                            theTitle = getOrDefault(theSolrDocument, "attr_" + Metadata.TITLE, "");
-                            if (theTitle == null || theTitle.trim().length() == 0) {
-                                theTitle = getOrDefault(theSolrDocument, "attr_" + PDF.DOC_INFO_TITLE.getName(), "");
-                            }
-                            if (theTitle == null || theTitle.trim().length() == 0) {
-                                theTitle = getOrDefault(theSolrDocument, "attr_title", "");
-                            }
-                            if (theTitle == null || theTitle.trim().length() == 0) {
-                                theTitle = getOrDefault(theSolrDocument,"attr_" + TikaCoreProperties.TITLE.getName(), "");
-                            }
-                            if (theTitle == null || theTitle.trim().length() == 0) {
-                                theTitle = getOrDefault(theSolrDocument,"attr_" + DublinCore.TITLE.getName(), "");
-                            }
-                            if (theTitle == null || theTitle.trim().length() == 0) {
-                                theTitle = getOrDefault(theSolrDocument, "attr_" + OfficeOpenXMLCore.SUBJECT.getName(), "");
-                            }
-                            if (theTitle == null || theTitle.trim().length() == 0) {
-                                theTitle = theFileName;
-                            }
+                    // Try to extract the title from the metadata
+                    var theTitle = theFileName;
+                    if (aConfiguration.isUseTitleAsFilename()) {
+                        theTitle = getOrDefault(theSolrDocument, "attr_" + Metadata.TITLE, "");
+                        if (theTitle == null || theTitle.trim().length() == 0) {
+                            theTitle = getOrDefault(theSolrDocument, "attr_" + PDF.DOC_INFO_TITLE.getName(), "");
                         }
-
-                        final var theDocument = new QueryResultDocument(i, theTitle, theFileName, theHighlight.toString().trim(),
-                                theStoredLastModified, theNormalizedScore, theFileName, thePreviewAvailable);
-
-                        if (configuration.isShowSimilarDocuments()) {
-                            final var theMoreLikeThisDocuments = theQueryResponse.getMoreLikeThis().get(theFileName);
-                            if (theMoreLikeThisDocuments != null) {
-                                for (final var theMLt : theMoreLikeThisDocuments) {
-                                    theDocument.addSimilarFile(((String) theMLt.getFieldValue(IndexFields.UNIQUEID)));
-                                }
-                            }
+                        if (theTitle == null || theTitle.trim().length() == 0) {
+                            theTitle = getOrDefault(theSolrDocument, "attr_title", "");
                         }
+                        if (theTitle == null || theTitle.trim().length() == 0) {
+                            theTitle = getOrDefault(theSolrDocument,"attr_" + TikaCoreProperties.TITLE.getName(), "");
+                        }
+                        if (theTitle == null || theTitle.trim().length() == 0) {
+                            theTitle = getOrDefault(theSolrDocument,"attr_" + DublinCore.TITLE.getName(), "");
+                        }
+                        if (theTitle == null || theTitle.trim().length() == 0) {
+                            theTitle = getOrDefault(theSolrDocument, "attr_" + OfficeOpenXMLCore.SUBJECT.getName(), "");
+                        }
+                        if (theTitle == null || theTitle.trim().length() == 0) {
+                            theTitle = theFileName;
+                        }
+                    }
 
-                        theDocuments.add(theDocument);
-
-                    } else {
+                    final var theDocument = new QueryResultDocument(i, theTitle, theFileOnDisk.toString(), theHighlight.toString().trim(),
+                            theStoredLastModified, theNormalizedScore, theFileName, thePreviewAvailable, resultValidator.isVerified(theFileOnDisk));
 
-                        // Document can be deleted, as it is no longer on the hard drive
-                        solrClient.deleteById(theFileName);
-                    }
+                    theDocuments.add(theDocument);
                 }
             }
 
-            final var theIndexSize = indexSize();
+            // Files no longer on disk are removed in the background and vanish from later searches
+            resultValidator.validate(theFilesOnDisk);
+
+            final var theIndexSize = indexStatistics.current().getNumberOfDocuments();
 
             final var theDuration = System.currentTimeMillis() - theStartTime;
 
-            final List<FacetDimension> theDimensions = new ArrayList<>();
-            fillFacet(IndexFields.LANGUAGE, aBasePath, theQueryResponse, theDimensions, t -> SupportedLanguage.valueOf(t).toLocale().getDisplayName());
-            fillFacet("attr_author", aBasePath, theQueryResponse, theDimensions, t -> t);
-            fillFacet("attr_last-modified-year", aBasePath, theQueryResponse, theDimensions, t -> t);
-            fillFacet("attr_" + IndexFields.EXTENSION, aBasePath, theQueryResponse, theDimensions, t -> t);
-            fillFacet("attr_entity_LOCATION", aBasePath, theQueryResponse, theDimensions, t -> t);
-            fillFacet("attr_entity_PERSON", aBasePath, theQueryResponse, theDimensions, t -> t);
-            fillFacet("attr_entity_ORGANIZATION", aBasePath, theQueryResponse, theDimensions, t -> t);
+            final var theDimensions = facetRegistry.dimensionsOf(theQueryResponse, aBasePath, aDrilldownFields);
 
-            return new QueryResult(StringEscapeUtils.escapeHtml4(aQueryString), theDuration, theDocuments, theDimensions, theIndexSize, Lists.reverse(activeFilters));
+            // A page that is not full or a cursor that did not move means there are no more results
+            String theNextPageLink = null;
+            final var theNextCursorMark = theQueryResponse.getNextCursorMark();
+            if (theQueryResponse.getResults() != null && theQueryResponse.getResults().size() >= configuration.getNumberOfSearchResults()
+                    && theNextCursorMark != null && !theNextCursorMark.equals(aCursorMark)) {
+                theNextPageLink = aBasePath + "?" + CursorMarkParams.CURSOR_MARK_PARAM + "=" + FacetSearchUtils.urlEncode(theNextCursorMark);
+            }
+
+            final var theResult = new QueryResult(StringEscapeUtils.escapeHtml4(aQueryString), theDuration, theDocuments, theDimensions, theIndexSize,
+                    Lists.reverse(activeFilters), theNextPageLink);
+            final var theVersion = (Long) theQueryResponse.getResponse().get(SearchPhraseSuggesterComponent.VERSION_RESPONSE);
+            queryResultCache.put(theCacheKey, theVersion, theResult);
+            return theResult;
         } catch (final Exception e) {
             throw new RuntimeException(e);
         }
     }
 
-    private String filterFacet(final String aPath, final String aFieldName) {
+    public Suggestion[] findSuggestionTermsFor(final String aClientId, final String aTerm) {
         try {
-            final var url = new URL(aPath);
-            final var thePaths = StringUtils.split(url.getPath(), "/");
-            final var theResult = new StringBuilder();
-            theResult.append(thePaths[1]);
-            if (thePaths.length > 2) {
-                for (var i = 2; i < thePaths.length; i++) {
-                    final var theFilter = thePaths[i];
-                    if (!theFilter.startsWith(aFieldName + "%3D")) {
-                        theResult.append("/");
-                        theResult.append(theFilter);
-                    }
-                }
-            }
-            return new URL(url.getProtocol(), url.getHost(), url.getPort(), "/search/" + theResult.toString()).toString();
-        } catch (final MalformedURLException e) {
-            throw new IllegalStateException("Cannot happen", e);
-        }
-    }
-
-    private void fillFacet(final String aFacetField, final String aBacklink, final QueryResponse aQueryResponse, final List<FacetDimension> aDimensions,
-            final Function<String, String> aConverter) {
-        final var theFacet = aQueryResponse.getFacetField(aFacetField);
-        if (theFacet != null) {
-            final List<Facet> theFacets = new ArrayList<>();
-            for (final var theCount : theFacet.getValues()) {
-                if (theCount.getCount() > 0) {
-                    final var theName = theCount.getName().trim();
-                    if (!theName.isEmpty()) {
-                        theFacets.add(new Facet(aConverter.apply(theName), theCount.getCount(),
-                                aBacklink + "/" + encode(
-                                        FacetSearchUtils.encode(aFacetField, theCount.getName()))));
-                    }
-                }
-            }
-            // Facetting only makes sense if there is more than one facet
-            if (theFacets.size() > 1) {
-                aDimensions.add(new FacetDimension(facetFieldToTitle.get(aFacetField), theFacets));
-            }
+            return suggestionService.suggest(aClientId, aTerm);
+        } catch (final IOException e) {
+            throw new RuntimeException(e);
         }
     }
 
-    public Suggestion[] findSuggestionTermsFor(final String aTerm) {
+    private SuggestionService.Result lookupSuggestions(final String aTerm) {
 
         final Map<String, Object> theParams = new HashMap<>();
         theParams.put("fxsuggest.enabled", "true");
@@ -432,6 +532,7 @@ class LuceneIndexHandler {
         theParams.put("fxsuggest.slop", Integer.toString(configuration.getSuggestionSlop()));
         theParams.put("fxsuggest.inorder", Boolean.toString(configuration.isSuggestionInOrder()));
         theParams.put("fxsuggest.numbersuggest", Integer.toString(configuration.getNumberOfSuggestions()));
+        FacetRegistry.disableFacets(theParams);
 
         try {
             final var theQueryResponse = solrClient.query(new SearchMapParams(theParams));
@@ -445,14 +546,36 @@ class LuceneIndexHandler {
                 theResult.add(new Suggestion(theLabel, theValue));
             }
 
-            return theResult.toArray(new Suggestion[theResult.size()]);
+            final var theVersion = (Long) theQueryResponse.getResponse().get(SearchPhraseSuggesterComponent.VERSION_RESPONSE);
+            final var theComplete = Boolean.TRUE.equals(theQueryResponse.getResponse().get(SearchPhraseSuggesterComponent.COMPLETE_RESPONSE));
+            return new SuggestionService.Result(theVersion, theResult.toArray(new Suggestion[theResult.size()]), theComplete);
 
         } catch (final Exception e) {
             throw new RuntimeException(e);
         }
     }
 
+    public List<String> findSimilarFiles(final String aUniqueID) {
+        try {
+            final var theFileOnDisk = getFileOnDiskForDocument(aUniqueID).toString();
+            final List<String> theResult = new ArrayList<>();
+            for (final var theFileId : similarDocuments.similarTo(aUniqueID)) {
+                final var theSimilarFile = getFileOnDiskForDocument(theFileId).toString();
+                if (!theSimilarFile.equals(theFileOnDisk) && !theResult.contains(theSimilarFile)) {
+                    theResult.add(theSimilarFile);
+                }
+            }
+            return theResult;
+        } catch (final IOException e) {
+            throw new RuntimeException(e);
+        }
+    }
+
     public File getFileOnDiskForDocument(final String aUniqueID) {
+        final var p = aUniqueID.indexOf(ContainerEntryExtractor.ENTRY_SEPARATOR);
+        if (p > 0) {
+            return new File(aUniqueID.substring(0, p));
+        }
         return new File(aUniqueID);
     }
 }
\ No newline at end of file
@@ -0,0 +1,116 @@
+/*
+ * FXDesktopSearch Copyright 2013 Mirko Sertic
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package de.mirkosertic.desktopsearch;
+
+import org.apache.tika.metadata.Metadata;
+
+import java.util.Date;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+class MetadataNormalizer {
+
+    static final long NO_DATE = Long.MIN_VALUE;
+
+    // Length of yyyy-MM-ddTHH:mm:ssZ
+    private static final int DATE_LENGTH = 20;
+    private static final long MILLIS_PER_DAY = 24L * 60 * 60 * 1000;
+
+    private final Map<String, String> nameReplacement;
+    private final Map<String, String> harmonizedNames;
+
+    public MetadataNormalizer(final Map<String, String> aNameReplacement) {
+        nameReplacement = aNameReplacement;
+        harmonizedNames = new ConcurrentHashMap<>();
+    }
+
+    public void addTo(final Metadata aMetadata, final Content aContent) {
+        for (final var theName : aMetadata.names()) {
+            final var theValue = aMetadata.get(theName);
+            final var theHarmonizedName = harmonizeName(theName);
+
+            // Try to detect if this is a date
+            final var theDate = parseDate(theValue);
+            if (theDate != NO_DATE) {
+                aContent.addMetaData(theHarmonizedName, new Date(theDate));
+            } else {
+                aContent.addMetaData(theHarmonizedName, theValue);
+            }
+        }
+    }
+
+    public String harmonizeName(final String aName) {
+        // There is only a small set of different metadata names, so we compute them only once
+        return harmonizedNames.computeIfAbsent(aName, theName -> {
+            var theResult = theName.toLowerCase();
+            final var p = theResult.indexOf(":");
+            if (p > 0) {
+                theResult = theResult.substring(p + 1);
+            }
+            final var theReplacement = nameReplacement.get(theResult);
+            if (theReplacement != null) {
+                return theReplacement;
+            }
+            return theResult;
+        });
+    }
+
+    // TODO: auch korrekt dieses Muster verarbeitrn :  Mon Feb 18 15:55:10 CET 2013
+    static long parseDate(final String aValue) {
+        if (aValue == null) {
+            return NO_DATE;
+        }
+        for (var i = 0; i + DATE_LENGTH <= aValue.length(); i++) {
+            if (aValue.charAt(i + 4) == '-' && aValue.charAt(i + 7) == '-' && aValue.charAt(i + 10) == 'T'
+                    && aValue.charAt(i + 13) == ':' && aValue.charAt(i + 16) == ':' && aValue.charAt(i + 19) == 'Z') {
+                final var theYear = digits(aValue, i, 4);
+                final var theMonth = digits(aValue, i + 5, 2);
+                final var theDay = digits(aValue, i + 8, 2);
+                final var theHour = digits(aValue, i + 11, 2);
+                final var theMinute = digits(aValue, i + 14, 2);
+                final var theSecond = digits(aValue, i + 17, 2);
+                if (theYear >= 0 && theMonth >= 1 && theMonth <= 12 && theDay >= 1 && theDay <= 31
+                        && theHour >= 0 && theHour <= 23 && theMinute >= 0 && theMinute <= 59 && theSecond >= 0 && theSecond <= 60) {
+                    return daysFromCivil(theYear, theMonth, theDay) * MILLIS_PER_DAY
+                            + ((theHour * 60L + theMinute) * 60L + theSecond) * 1000L;
+                }
+            }
+        }
+        return NO_DATE;
+    }
+
+    private static int digits(final String aValue, final int aOffset, final int aLength) {
+        var theResult = 0;
+        for (var i = aOffset; i < aOffset + aLength; i++) {
+            final var c = aValue.charAt(i);
+            if (c < '0' || c > '9') {
+                return -1;
+            }
+            theResult = theResult * 10 + (c - '0');
+        }
+        return theResult;
+    }
+
+    // Days since 1970-01-01 in the proleptic gregorian calendar, see http://howardhinnant.github.io/date_algorithms.html
+    private static long daysFromCivil(final int aYear, final int aMonth, final int aDay) {
+        final long y = aMonth <= 2 ? aYear - 1 : aYear;
+        final var theEra = (y >= 0 ? y : y - 399) / 400;
+        final var theYearOfEra = y - theEra * 400;
+        final var theDayOfYear = (153 * (aMonth > 2 ? aMonth - 3 : aMonth + 9) + 2) / 5 + aDay - 1;
+        final var theDayOfEra = theYearOfEra * 365 + theYearOfEra / 4 - theYearOfEra / 100 + theDayOfYear;
+        return theEra * 146097 + theDayOfEra - 719468;
+    }
+}
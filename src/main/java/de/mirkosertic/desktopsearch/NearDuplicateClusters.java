@@ -0,0 +1,92 @@
+/*
+ * FXDesktopSearch Copyright 2013 Mirko Sertic
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package de.mirkosertic.desktopsearch;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.BiConsumer;
+
+// Near-duplicates join the cluster of the closest document, everything else starts a new cluster.
+// Documents added since the last searcher was opened are not found in the index yet, so their
+// signatures are remembered until the searcher after the next one is open
+class NearDuplicateClusters {
+
+    @FunctionalInterface
+    interface IndexLookup {
+
+        // Passes the signature and cluster of indexed documents sharing at least one of the bands
+        void candidates(List<String> aBands, BiConsumer<Long, String> aConsumer) throws IOException;
+    }
+
+    private static class Signature {
+
+        private final long simHash;
+        private final String cluster;
+
+        private Signature(final long aSimHash, final String aCluster) {
+            simHash = aSimHash;
+            cluster = aCluster;
+        }
+    }
+
+    private Map<String, List<Signature>> added;
+    private Map<String, List<Signature>> committing;
+
+    public NearDuplicateClusters() {
+        added = new HashMap<>();
+        committing = new HashMap<>();
+    }
+
+    public synchronized String clusterOf(final long aSimHash, final IndexLookup aIndex) throws IOException {
+        final var theBands = SimHash.bandsOf(aSimHash);
+        final List<Signature> theCandidates = new ArrayList<>();
+        aIndex.candidates(theBands, (aCandidateHash, aCluster) -> {
+            if (aCandidateHash != null && aCluster != null) {
+                theCandidates.add(new Signature(aCandidateHash, aCluster));
+            }
+        });
+        for (final var theBand : theBands) {
+            theCandidates.addAll(added.getOrDefault(theBand, List.of()));
+            theCandidates.addAll(committing.getOrDefault(theBand, List.of()));
+        }
+
+        var theResult = Long.toHexString(aSimHash);
+        var theBestDistance = SimHash.MAX_DISTANCE + 1;
+        for (final var theCandidate : theCandidates) {
+            final var theDistance = SimHash.distance(aSimHash, theCandidate.simHash);
+            if (theDistance < theBestDistance) {
+                theBestDistance = theDistance;
+                theResult = theCandidate.cluster;
+            }
+        }
+
+        final var theSignature = new Signature(aSimHash, theResult);
+        for (final var theBand : theBands) {
+            added.computeIfAbsent(theBand, t -> new ArrayList<>()).add(theSignature);
+        }
+        return theResult;
+    }
+
+    // Documents added before this searcher was opened might have been added after its commit started,
+    // so they are only forgotten once the following searcher is open
+    public synchronized void searcherOpened() {
+        committing = added;
+        added = new HashMap<>();
+    }
+}
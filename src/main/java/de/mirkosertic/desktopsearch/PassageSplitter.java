@@ -0,0 +1,74 @@
+/*
+ * FXDesktopSearch Copyright 2013 Mirko Sertic
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package de.mirkosertic.desktopsearch;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+final class PassageSplitter {
+
+    public static final String PASSAGE_SEPARATOR = "#passage-";
+
+    static final int PASSAGE_SIZE = 4096;
+    static final int PASSAGE_OVERLAP = 256;
+
+    private PassageSplitter() {
+    }
+
+    public static List<String> split(final String aText) {
+        return split(aText, PASSAGE_SIZE, PASSAGE_OVERLAP);
+    }
+
+    // Passages overlap a bit, so phrases crossing a passage border are still found
+    static List<String> split(final String aText, final int aPassageSize, final int aOverlap) {
+        if (aText.length() <= aPassageSize) {
+            return Collections.singletonList(aText);
+        }
+        final List<String> theResult = new ArrayList<>();
+        var theStart = 0;
+        while (theStart < aText.length()) {
+            var theEnd = Math.min(theStart + aPassageSize, aText.length());
+            if (theEnd < aText.length()) {
+                theEnd = wordBoundaryBefore(aText, theEnd, theStart + aPassageSize / 2);
+            }
+            theResult.add(aText.substring(theStart, theEnd));
+            if (theEnd == aText.length()) {
+                break;
+            }
+            theStart = wordBoundaryAfter(aText, Math.max(theEnd - aOverlap, theStart + 1), theEnd);
+        }
+        return theResult;
+    }
+
+    private static int wordBoundaryBefore(final String aText, final int aPosition, final int aMinimum) {
+        for (var i = aPosition; i > aMinimum; i--) {
+            if (Character.isWhitespace(aText.charAt(i - 1))) {
+                return i;
+            }
+        }
+        return aPosition;
+    }
+
+    private static int wordBoundaryAfter(final String aText, final int aPosition, final int aMaximum) {
+        for (var i = aPosition; i < aMaximum; i++) {
+            if (Character.isWhitespace(aText.charAt(i - 1))) {
+                return i;
+            }
+        }
+        return aPosition;
+    }
+}
@@ -0,0 +1,414 @@
+/*
+ * FXDesktopSearch Copyright 2013 Mirko Sertic
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package de.mirkosertic.desktopsearch;
+
+import lombok.extern.slf4j.Slf4j;
+import org.apache.lucene.analysis.Analyzer;
+import org.apache.lucene.analysis.CharArraySet;
+import org.apache.lucene.analysis.standard.StandardAnalyzer;
+import org.apache.lucene.analysis.standard.StandardTokenizer;
+import org.apache.lucene.analysis.tokenattributes.CharTermAttribute;
+import org.apache.lucene.index.DirectoryReader;
+import org.apache.lucene.index.FilterLeafReader;
+import org.apache.lucene.index.IndexReader;
+import org.apache.lucene.index.LeafReader;
+import org.apache.lucene.index.ReaderUtil;
+import org.apache.lucene.index.SegmentInfos;
+import org.apache.lucene.index.SegmentReader;
+import org.apache.lucene.index.Term;
+import org.apache.lucene.search.SearcherManager;
+import org.apache.lucene.search.TermQuery;
+import org.apache.lucene.search.suggest.InputIterator;
+import org.apache.lucene.search.suggest.analyzing.AnalyzingInfixSuggester;
+import org.apache.lucene.store.Directory;
+import org.apache.lucene.store.FSDirectory;
+import org.apache.lucene.util.Bits;
+import org.apache.lucene.util.BytesRef;
+import org.apache.lucene.util.FixedBitSet;
+import org.apache.lucene.util.StringHelper;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.stream.Collectors;
+
+// Weighted phrase completions served from a dedicated infix suggester index. Phrases are word shingles
+// of the stored content, collected once for every new segment of the document index. The weight of a phrase
+// is the number of documents containing it, summed over all segments. What every segment contributed is kept,
+// so documents deleted later are subtracted, and so is the whole segment once it is merged away.
+// The counts the weights belong to are listed in the commit of the suggester index, and a changed count is
+// written to a new file, so the weights and the counts are never out of step after a crash. A merged segment is tokenized again like a new one, so a
+// forced merge of the document index means reading most of the stored content once more
+@Slf4j
+class PhraseSuggestionIndex implements Closeable {
+
+    static final int MIN_SHINGLE_SIZE = 2;
+    static final int MAX_SHINGLE_SIZE = 3;
+    static final int MAX_CHARS_PER_DOCUMENT = 32 * 1024;
+    static final int MAX_PHRASES_PER_SEGMENT = 20000;
+    static final int MAX_DISTINCT_PHRASES = 500000;
+
+    private static final String COUNTS_COMMIT_DATA = "counts";
+
+    // Complete if the suggester found no more phrases than returned, so a longer prefix finds nothing else
+    static class Completions {
+
+        private final List<Suggestion> suggestions;
+        private final boolean complete;
+
+        Completions(final List<Suggestion> aSuggestions, final boolean aComplete) {
+            suggestions = aSuggestions;
+            complete = aComplete;
+        }
+
+        public List<Suggestion> getSuggestions() {
+            return suggestions;
+        }
+
+        public boolean isComplete() {
+            return complete;
+        }
+    }
+
+    private static class Phrase {
+
+        private final String text;
+        private int documentCount;
+        private int lastDocument = -1;
+
+        private Phrase(final String aText) {
+            text = aText;
+        }
+    }
+
+    // What a segment contributed to the weights, and the documents already deleted when it was counted
+    private static class SegmentCounts {
+
+        private final BitSet deletedDocuments;
+        private final Map<String, Long> phrases;
+
+        private SegmentCounts(final BitSet aDeletedDocuments, final Map<String, Long> aPhrases) {
+            deletedDocuments = aDeletedDocuments;
+            phrases = aPhrases;
+        }
+    }
+
+    private static class Suggester extends AnalyzingInfixSuggester {
+
+        private Suggester(final Directory aDirectory, final Analyzer aAnalyzer) throws IOException {
+            super(aDirectory, aAnalyzer, aAnalyzer, DEFAULT_MIN_PREFIX_CHARS, false, true, true, false);
+        }
+
+        // The weight as of the last refresh, zero if the phrase is not known
+        private long weightOf(final String aText) throws IOException {
+            final SearcherManager theManager;
+            synchronized (searcherMgrLock) {
+                theManager = searcherMgr;
+            }
+            if (theManager == null) {
+                return 0;
+            }
+            final var theSearcher = theManager.acquire();
+            try {
+                final var theHits = theSearcher.search(new TermQuery(new Term(EXACT_TEXT_FIELD_NAME, aText)), 1);
+                if (theHits.scoreDocs.length == 0) {
+                    return 0;
+                }
+                final var theDoc = theHits.scoreDocs[0].doc;
+                final var theLeaf = theSearcher.getIndexReader().leaves().get(ReaderUtil.subIndex(theDoc, theSearcher.getIndexReader().leaves()));
+                final var theWeights = theLeaf.reader().getNumericDocValues("weight");
+                if (theWeights == null || !theWeights.advanceExact(theDoc - theLeaf.docBase)) {
+                    return 0;
+                }
+                return theWeights.longValue();
+            } finally {
+                theManager.release(theSearcher);
+            }
+        }
+
+        // Only called after an update, so the writer is open
+        private void commit(final Set<String> aCountFiles) throws IOException {
+            writer.setLiveCommitData(Map.of(COUNTS_COMMIT_DATA, String.join(",", aCountFiles)).entrySet());
+            commit();
+        }
+    }
+
+    private final Directory directory;
+    private final Suggester suggester;
+    private final Analyzer tokenizer;
+    private final Path countsDirectory;
+    private final Map<String, Integer> indexedSegments;
+
+    public PhraseSuggestionIndex(final Path aDirectory) throws IOException {
+        directory = FSDirectory.open(aDirectory);
+        suggester = new Suggester(directory, new StandardAnalyzer(CharArraySet.EMPTY_SET));
+        // Phrases keep the case they were written in, so they are only split into words
+        tokenizer = new Analyzer() {
+            @Override
+            protected TokenStreamComponents createComponents(final String aFieldName) {
+                return new TokenStreamComponents(new StandardTokenizer());
+            }
+        };
+        countsDirectory = aDirectory.resolveSibling(aDirectory.getFileName() + ".counts");
+        Files.createDirectories(countsDirectory);
+        indexedSegments = new HashMap<>();
+
+        final var theCountFiles = DirectoryReader.indexExists(directory)
+                ? SegmentInfos.readLatestCommit(directory).getUserData().get(COUNTS_COMMIT_DATA)
+                : null;
+        if (theCountFiles != null) {
+            for (final var theCountFile : theCountFiles.split(",")) {
+                if (!theCountFile.isEmpty()) {
+                    final var theSeparator = theCountFile.lastIndexOf('_');
+                    indexedSegments.put(theCountFile.substring(0, theSeparator), Integer.parseInt(theCountFile.substring(theSeparator + 1)));
+                }
+            }
+        } else if (suggester.getCount() > 0) {
+            // Without the counts of its segments the weights cannot be maintained, so it is built again
+            suggester.build(InputIterator.EMPTY);
+        }
+        // Counts written after the last commit
+        deleteUnusedCounts();
+    }
+
+    // Null for readers not backed by a single segment
+    static String segmentIdOf(final LeafReader aReader) {
+        final var theReader = FilterLeafReader.unwrap(aReader);
+        if (theReader instanceof SegmentReader) {
+            return StringHelper.idToString(((SegmentReader) theReader).getSegmentInfo().info.getId());
+        }
+        return null;
+    }
+
+    // Merged segments are seen again, their counts replace the counts of the segments they were merged from.
+    // Counts are written before and deleted after the commit, so the committed counts are always there
+    public synchronized void update(final IndexReader aReader) throws IOException {
+        final Map<String, Integer> theCurrentSegments = new HashMap<>();
+        final Map<String, Long> theChanges = new HashMap<>();
+        for (final var theLeaf : aReader.leaves()) {
+            final var theReader = theLeaf.reader();
+            final var theSegmentId = segmentIdOf(theReader);
+            if (theSegmentId == null) {
+                continue;
+            }
+            theCurrentSegments.put(theSegmentId, theReader.numDeletedDocs());
+            final var theIndexedDeletions = indexedSegments.get(theSegmentId);
+            if (theIndexedDeletions == null) {
+                final var theCounts = new SegmentCounts(deletedDocumentsOf(theReader), mostCommon(phrasesOf(theReader, theReader.getLiveDocs())));
+                writeCounts(countFileOf(theSegmentId, theReader.numDeletedDocs()), theCounts);
+                theCounts.phrases.forEach((k, v) -> theChanges.merge(k, v, Long::sum));
+            } else if (theIndexedDeletions != theReader.numDeletedDocs()) {
+                subtractDeletedDocuments(countFileOf(theSegmentId, theIndexedDeletions), theSegmentId, theReader, theChanges);
+            }
+        }
+        for (final var theSegmentId : indexedSegments.keySet()) {
+            if (!theCurrentSegments.containsKey(theSegmentId)) {
+                readCounts(countFileOf(theSegmentId, indexedSegments.get(theSegmentId))).phrases.forEach((k, v) -> theChanges.merge(k, -v, Long::sum));
+            }
+        }
+        indexedSegments.clear();
+        indexedSegments.putAll(theCurrentSegments);
+
+        var theUpdated = 0;
+        for (final var theChange : theChanges.entrySet()) {
+            if (theChange.getValue() != 0) {
+                // Phrases no longer found keep a weight of zero and are filtered from the lookup
+                final var theWeight = Math.max(0, suggester.weightOf(theChange.getKey()) + theChange.getValue());
+                suggester.update(new BytesRef(theChange.getKey()), null, theWeight, null);
+                theUpdated++;
+            }
+        }
+        if (theUpdated > 0) {
+            suggester.refresh();
+            suggester.commit(countFiles());
+            deleteUnusedCounts();
+            log.info("Updated the weight of {} phrases in the suggestion index", theUpdated);
+        }
+    }
+
+    // Documents deleted since the segment was counted are tokenized again, and their phrases subtracted
+    private void subtractDeletedDocuments(final String aCountFile, final String aSegmentId, final LeafReader aReader, final Map<String, Long> aChanges) throws IOException {
+        final var theCounts = readCounts(aCountFile);
+        final var theDeleted = deletedDocumentsOf(aReader);
+        final var theNewlyDeleted = (BitSet) theDeleted.clone();
+        theNewlyDeleted.andNot(theCounts.deletedDocuments);
+
+        // Only phrases the segment contributed are subtracted. They were counted by their first spelling
+        final Map<String, String> theContributed = new HashMap<>();
+        theCounts.phrases.keySet().forEach(t -> theContributed.put(t.toLowerCase(Locale.ROOT), t));
+        final var theBits = new FixedBitSet(aReader.maxDoc());
+        theNewlyDeleted.stream().forEach(theBits::set);
+        for (final var theEntry : phrasesOf(aReader, theBits).entrySet()) {
+            final var theText = theContributed.get(theEntry.getKey());
+            if (theText != null) {
+                final var theCount = Math.min(theCounts.phrases.get(theText), theEntry.getValue().documentCount);
+                theCounts.phrases.merge(theText, -theCount, Long::sum);
+                aChanges.merge(theText, -theCount, Long::sum);
+            }
+        }
+        writeCounts(countFileOf(aSegmentId, aReader.numDeletedDocs()), new SegmentCounts(theDeleted, theCounts.phrases));
+    }
+
+    private static String countFileOf(final String aSegmentId, final int aDeletedDocuments) {
+        return aSegmentId + "_" + aDeletedDocuments;
+    }
+
+    private Set<String> countFiles() {
+        final Set<String> theResult = new HashSet<>();
+        indexedSegments.forEach((k, v) -> theResult.add(countFileOf(k, v)));
+        return theResult;
+    }
+
+    private static BitSet deletedDocumentsOf(final LeafReader aReader) {
+        final var theResult = new BitSet(aReader.maxDoc());
+        final var theLiveDocs = aReader.getLiveDocs();
+        if (theLiveDocs != null) {
+            for (var theDoc = 0; theDoc < aReader.maxDoc(); theDoc++) {
+                if (!theLiveDocs.get(theDoc)) {
+                    theResult.set(theDoc);
+                }
+            }
+        }
+        return theResult;
+    }
+
+    private void deleteUnusedCounts() throws IOException {
+        final var theUsed = countFiles();
+        try (final var theFiles = Files.list(countsDirectory)) {
+            for (final var theFile : theFiles.collect(Collectors.toList())) {
+                if (!theUsed.contains(theFile.getFileName().toString())) {
+                    Files.delete(theFile);
+                }
+            }
+        }
+    }
+
+    // The first line lists the documents deleted when the segment was counted, followed by the phrases
+    private void writeCounts(final String aCountFile, final SegmentCounts aCounts) throws IOException {
+        final List<String> theLines = new ArrayList<>();
+        theLines.add(aCounts.deletedDocuments.stream().mapToObj(Integer::toString).collect(Collectors.joining(",")));
+        aCounts.phrases.forEach((k, v) -> theLines.add(v + "\t" + k));
+        Files.write(countsDirectory.resolve(aCountFile), theLines, StandardCharsets.UTF_8);
+    }
+
+    private SegmentCounts readCounts(final String aCountFile) throws IOException {
+        final var theLines = Files.readAllLines(countsDirectory.resolve(aCountFile), StandardCharsets.UTF_8);
+        final var theDeleted = new BitSet();
+        for (final var theDoc : theLines.get(0).split(",")) {
+            if (!theDoc.isEmpty()) {
+                theDeleted.set(Integer.parseInt(theDoc));
+            }
+        }
+        final Map<String, Long> thePhrases = new HashMap<>();
+        for (final var theLine : theLines.subList(1, theLines.size())) {
+            final var theSeparator = theLine.indexOf('\t');
+            thePhrases.put(theLine.substring(theSeparator + 1), Long.parseLong(theLine.substring(0, theSeparator)));
+        }
+        return new SegmentCounts(theDeleted, thePhrases);
+    }
+
+    // The phrases of the given documents, all documents if null, by their lower case text
+    private Map<String, Phrase> phrasesOf(final LeafReader aReader, final Bits aDocuments) throws IOException {
+        final Map<String, Phrase> thePhrases = new HashMap<>();
+        final var theFields = Collections.singleton(IndexFields.CONTENT);
+        final var theWindow = new String[MAX_SHINGLE_SIZE];
+        for (var theDoc = 0; theDoc < aReader.maxDoc(); theDoc++) {
+            if (aDocuments != null && !aDocuments.get(theDoc)) {
+                continue;
+            }
+            final var theContent = aReader.document(theDoc, theFields).get(IndexFields.CONTENT);
+            if (theContent == null) {
+                continue;
+            }
+            try (final var theTokens = tokenizer.tokenStream(IndexFields.CONTENT, theContent.length() > MAX_CHARS_PER_DOCUMENT
+                    ? theContent.substring(0, MAX_CHARS_PER_DOCUMENT)
+                    : theContent)) {
+                final var theTerm = theTokens.addAttribute(CharTermAttribute.class);
+                theTokens.reset();
+                var theTokenCount = 0;
+                while (theTokens.incrementToken()) {
+                    System.arraycopy(theWindow, 1, theWindow, 0, MAX_SHINGLE_SIZE - 1);
+                    theWindow[MAX_SHINGLE_SIZE - 1] = theTerm.toString();
+                    theTokenCount++;
+                    for (var theSize = MIN_SHINGLE_SIZE; theSize <= Math.min(theTokenCount, MAX_SHINGLE_SIZE); theSize++) {
+                        final var theText = String.join(" ", Arrays.asList(theWindow).subList(MAX_SHINGLE_SIZE - theSize, MAX_SHINGLE_SIZE));
+                        final var theKey = theText.toLowerCase(Locale.ROOT);
+                        var thePhrase = thePhrases.get(theKey);
+                        if (thePhrase == null) {
+                            if (thePhrases.size() >= MAX_DISTINCT_PHRASES) {
+                                continue;
+                            }
+                            thePhrase = new Phrase(theText);
+                            thePhrases.put(theKey, thePhrase);
+                        }
+                        if (thePhrase.lastDocument != theDoc) {
+                            thePhrase.lastDocument = theDoc;
+                            thePhrase.documentCount++;
+                        }
+                    }
+                }
+                theTokens.end();
+            }
+        }
+        return thePhrases;
+    }
+
+    // Only the most common phrases of a segment are worth a suggestion
+    private static Map<String, Long> mostCommon(final Map<String, Phrase> aPhrases) {
+        final List<Phrase> theBest = new ArrayList<>(aPhrases.values());
+        theBest.sort((o1, o2) -> Integer.compare(o2.documentCount, o1.documentCount));
+        final var theCount = Math.min(theBest.size(), MAX_PHRASES_PER_SEGMENT);
+        final Map<String, Long> theResult = new HashMap<>();
+        for (final var thePhrase : theBest.subList(0, theCount)) {
+            theResult.put(thePhrase.text, (long) thePhrase.documentCount);
+        }
+        log.info("Found {} of {} phrases in a new segment", theCount, theBest.size());
+        return theResult;
+    }
+
+    public Completions lookup(final String aPhrase, final int aNumberOfSuggestions) throws IOException {
+        if (suggester.getCount() == 0) {
+            return new Completions(Collections.emptyList(), true);
+        }
+        final List<Suggestion> theResult = new ArrayList<>();
+        // Phrases of weight zero are only dropped after the top hits were taken, so a shorter list is not complete
+        final var theLookups = suggester.lookup(aPhrase, aNumberOfSuggestions, true, true);
+        for (final var theLookup : theLookups) {
+            if (theLookup.value > 0) {
+                theResult.add(new Suggestion(theLookup.highlightKey.toString(), theLookup.key.toString()));
+            }
+        }
+        return new Completions(theResult, theLookups.size() < aNumberOfSuggestions);
+    }
+
+    @Override
+    public synchronized void close() throws IOException {
+        suggester.close();
+        tokenizer.close();
+    }
+}
@@ -0,0 +1,43 @@
+/*
+ * FXDesktopSearch Copyright 2013 Mirko Sertic
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package de.mirkosertic.desktopsearch;
+
+import org.apache.tika.metadata.HttpHeaders;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.nio.file.attribute.BasicFileAttributes;
+
+class PlainTextExtractor implements TextExtractor {
+
+    private final int maxLength;
+
+    public PlainTextExtractor(final int aMaxLength) {
+        maxLength = aMaxLength;
+    }
+
+    @Override
+    public String extractText(final Path aFile, final BasicFileAttributes aAttributes, final ExtractionContext aContext) throws IOException {
+        final var theMetadata = aContext.getMetadata();
+        final var theData = TextDecodingUtils.read(aFile, aAttributes.size(), maxLength);
+        final var theCharset = TextDecodingUtils.detectCharset(theData, null);
+
+        theMetadata.set(HttpHeaders.CONTENT_TYPE, "text/plain; charset=" + theCharset.name());
+        theMetadata.set(HttpHeaders.CONTENT_ENCODING, theCharset.name());
+
+        return TextDecodingUtils.decode(theData, theCharset, maxLength).toString();
+    }
+}
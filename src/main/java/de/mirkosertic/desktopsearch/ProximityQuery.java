@@ -0,0 +1,394 @@
+/*
+ * FXDesktopSearch Copyright 2013 Mirko Sertic
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package de.mirkosertic.desktopsearch;
+
+import org.apache.lucene.index.IndexReader;
+import org.apache.lucene.index.LeafReaderContext;
+import org.apache.lucene.index.Term;
+import org.apache.lucene.index.TermStates;
+import org.apache.lucene.search.BooleanClause;
+import org.apache.lucene.search.ConjunctionDISI;
+import org.apache.lucene.search.DocIdSetIterator;
+import org.apache.lucene.search.Explanation;
+import org.apache.lucene.search.IndexSearcher;
+import org.apache.lucene.search.LeafSimScorer;
+import org.apache.lucene.search.Query;
+import org.apache.lucene.search.QueryVisitor;
+import org.apache.lucene.search.ScoreMode;
+import org.apache.lucene.search.Scorer;
+import org.apache.lucene.search.TermStatistics;
+import org.apache.lucene.search.TwoPhaseIterator;
+import org.apache.lucene.search.Weight;
+import org.apache.lucene.search.similarities.Similarity;
+import org.apache.lucene.search.spans.SpanQuery;
+import org.apache.lucene.search.spans.SpanWeight;
+import org.apache.lucene.search.spans.Spans;
+import org.apache.lucene.util.ArrayUtil;
+import org.apache.lucene.util.PriorityQueue;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+
+// Scores the proximity of all clauses like an exact ordered SpanNearQuery boosted by 61 plus unordered
+// SpanNearQueries with slop 0..9 boosted by 60..51, but walks the positions of every document only once.
+// Matches and frequencies are computed exactly like NearSpansOrdered and NearSpansUnordered do.
+class ProximityQuery extends Query {
+
+    static final int MAX_EDIT_DISTANCE = 10;
+    static final float EXACT_MATCH_BOOST = 61;
+
+    static float slopBoost(final int aSlop) {
+        return 50 + MAX_EDIT_DISTANCE - aSlop;
+    }
+
+    private final String field;
+    private final List<SpanQuery> clauses;
+
+    public ProximityQuery(final String aField, final List<SpanQuery> aClauses) {
+        field = aField;
+        clauses = Collections.unmodifiableList(new ArrayList<>(aClauses));
+    }
+
+    public List<SpanQuery> getClauses() {
+        return clauses;
+    }
+
+    @Override
+    public Query rewrite(final IndexReader aReader) throws IOException {
+        final List<SpanQuery> theRewritten = new ArrayList<>();
+        var theChanged = false;
+        for (final var theClause : clauses) {
+            final var theQuery = (SpanQuery) theClause.rewrite(aReader);
+            theChanged |= theQuery != theClause;
+            theRewritten.add(theQuery);
+        }
+        if (theChanged) {
+            return new ProximityQuery(field, theRewritten);
+        }
+        return this;
+    }
+
+    @Override
+    public void visit(final QueryVisitor aVisitor) {
+        if (aVisitor.acceptField(field)) {
+            final var theVisitor = aVisitor.getSubVisitor(BooleanClause.Occur.MUST, this);
+            for (final var theClause : clauses) {
+                theClause.visit(theVisitor);
+            }
+        }
+    }
+
+    @Override
+    public Weight createWeight(final IndexSearcher aSearcher, final ScoreMode aScoreMode, final float aBoost) throws IOException {
+        final List<SpanWeight> theWeights = new ArrayList<>();
+        for (final var theClause : clauses) {
+            theWeights.add(theClause.createWeight(aSearcher, aScoreMode, 1f));
+        }
+        if (!aScoreMode.needsScores()) {
+            return new ProximityWeight(theWeights, null, null);
+        }
+
+        // Same statistics as the SpanWeight of a SpanNearQuery over all clauses would use
+        final Map<Term, TermStates> theTermStates = SpanQuery.getTermStates(theWeights);
+        final var theTermStats = new TermStatistics[theTermStates.size()];
+        var theTermCount = 0;
+        for (final var theEntry : theTermStates.entrySet()) {
+            if (theEntry.getValue().docFreq() > 0) {
+                theTermStats[theTermCount++] = aSearcher.termStatistics(theEntry.getKey(), theEntry.getValue());
+            }
+        }
+        if (theTermCount == 0) {
+            return new ProximityWeight(theWeights, null, null);
+        }
+        final var theCollectionStats = aSearcher.collectionStatistics(field);
+        final var theStats = ArrayUtil.copyOfSubArray(theTermStats, 0, theTermCount);
+        final var theSimilarity = aSearcher.getSimilarity();
+
+        final var theExactScorer = theSimilarity.scorer(EXACT_MATCH_BOOST * aBoost, theCollectionStats, theStats);
+        final var theSlopScorers = new Similarity.SimScorer[MAX_EDIT_DISTANCE];
+        for (var theSlop = 0; theSlop < MAX_EDIT_DISTANCE; theSlop++) {
+            theSlopScorers[theSlop] = theSimilarity.scorer(slopBoost(theSlop) * aBoost, theCollectionStats, theStats);
+        }
+        return new ProximityWeight(theWeights, theExactScorer, theSlopScorers);
+    }
+
+    @Override
+    public String toString(final String aField) {
+        final var theResult = new StringBuilder("proximity([");
+        for (var i = 0; i < clauses.size(); i++) {
+            if (i > 0) {
+                theResult.append(", ");
+            }
+            theResult.append(clauses.get(i).toString(aField));
+        }
+        theResult.append("], ").append(MAX_EDIT_DISTANCE).append(")");
+        return theResult.toString();
+    }
+
+    @Override
+    public boolean equals(final Object aOther) {
+        if (!sameClassAs(aOther)) {
+            return false;
+        }
+        final var theOther = (ProximityQuery) aOther;
+        return field.equals(theOther.field) && clauses.equals(theOther.clauses);
+    }
+
+    @Override
+    public int hashCode() {
+        return classHash() ^ Objects.hash(field, clauses);
+    }
+
+    private class ProximityWeight extends Weight {
+
+        private final List<SpanWeight> weights;
+        private final Similarity.SimScorer exactScorer;
+        private final Similarity.SimScorer[] slopScorers;
+
+        ProximityWeight(final List<SpanWeight> aWeights, final Similarity.SimScorer aExactScorer, final Similarity.SimScorer[] aSlopScorers) {
+            super(ProximityQuery.this);
+            weights = aWeights;
+            exactScorer = aExactScorer;
+            slopScorers = aSlopScorers;
+        }
+
+        @Override
+        public void extractTerms(final Set<Term> aTerms) {
+            for (final var theWeight : weights) {
+                theWeight.extractTerms(aTerms);
+            }
+        }
+
+        @Override
+        public ProximityScorer scorer(final LeafReaderContext aContext) throws IOException {
+            final List<Spans> theSpans = new ArrayList<>();
+            for (final var theWeight : weights) {
+                final var theClauseSpans = theWeight.getSpans(aContext, SpanWeight.Postings.POSITIONS);
+                if (theClauseSpans == null) {
+                    // At least one clause does not occur in this segment
+                    return null;
+                }
+                theSpans.add(theClauseSpans);
+            }
+            LeafSimScorer theExactScorer = null;
+            LeafSimScorer[] theSlopScorers = null;
+            if (exactScorer != null) {
+                theExactScorer = new LeafSimScorer(exactScorer, aContext.reader(), field, true);
+                theSlopScorers = new LeafSimScorer[slopScorers.length];
+                for (var i = 0; i < slopScorers.length; i++) {
+                    theSlopScorers[i] = new LeafSimScorer(slopScorers[i], aContext.reader(), field, true);
+                }
+            }
+            return new ProximityScorer(this, theSpans, theExactScorer, theSlopScorers);
+        }
+
+        @Override
+        public Explanation explain(final LeafReaderContext aContext, final int aDoc) throws IOException {
+            final var theScorer = scorer(aContext);
+            if (theScorer != null && theScorer.iterator().advance(aDoc) == aDoc && theScorer.twoPhaseIterator().matches()) {
+                return Explanation.match(theScorer.score(), "proximity, exact freq=" + theScorer.exactFreq
+                        + ", freq with slop " + (MAX_EDIT_DISTANCE - 1) + "=" + theScorer.slopFreqs[MAX_EDIT_DISTANCE - 1]);
+            }
+            return Explanation.noMatch("no proximity match");
+        }
+
+        @Override
+        public boolean isCacheable(final LeafReaderContext aContext) {
+            for (final var theWeight : weights) {
+                if (!theWeight.isCacheable(aContext)) {
+                    return false;
+                }
+            }
+            return true;
+        }
+    }
+
+    private static class ProximityScorer extends Scorer {
+
+        private final Spans[] spans;
+        private final DocIdSetIterator approximation;
+        private final LeafSimScorer exactScorer;
+        private final LeafSimScorer[] slopScorers;
+
+        // Positions of every clause in the current document
+        private final int[][] starts;
+        private final int[][] ends;
+        private final int[] counts;
+        private final int[] cursors;
+        private final PriorityQueue<Integer> window;
+
+        private float exactFreq;
+        private final float[] slopFreqs;
+
+        ProximityScorer(final Weight aWeight, final List<Spans> aSpans, final LeafSimScorer aExactScorer, final LeafSimScorer[] aSlopScorers) {
+            super(aWeight);
+            spans = aSpans.toArray(new Spans[0]);
+            approximation = ConjunctionDISI.intersectSpans(aSpans);
+            exactScorer = aExactScorer;
+            slopScorers = aSlopScorers;
+            starts = new int[spans.length][8];
+            ends = new int[spans.length][8];
+            counts = new int[spans.length];
+            cursors = new int[spans.length];
+            slopFreqs = new float[MAX_EDIT_DISTANCE];
+            window = new PriorityQueue<>(spans.length) {
+                @Override
+                protected boolean lessThan(final Integer aClause1, final Integer aClause2) {
+                    final var theStart1 = starts[aClause1][cursors[aClause1]];
+                    final var theStart2 = starts[aClause2][cursors[aClause2]];
+                    if (theStart1 == theStart2) {
+                        return ends[aClause1][cursors[aClause1]] < ends[aClause2][cursors[aClause2]];
+                    }
+                    return theStart1 < theStart2;
+                }
+            };
+        }
+
+        @Override
+        public int docID() {
+            return approximation.docID();
+        }
+
+        @Override
+        public DocIdSetIterator iterator() {
+            return TwoPhaseIterator.asDocIdSetIterator(twoPhaseIterator());
+        }
+
+        @Override
+        public TwoPhaseIterator twoPhaseIterator() {
+            return new TwoPhaseIterator(approximation) {
+                @Override
+                public boolean matches() throws IOException {
+                    collectPositions();
+                    computeExactFreq();
+                    computeSlopFreqs();
+                    return exactFreq > 0 || slopFreqs[MAX_EDIT_DISTANCE - 1] > 0;
+                }
+
+                @Override
+                public float matchCost() {
+                    var theCost = 0f;
+                    for (final var theSpans : spans) {
+                        theCost += theSpans.positionsCost();
+                    }
+                    return theCost;
+                }
+            };
+        }
+
+        private void collectPositions() throws IOException {
+            for (var i = 0; i < spans.length; i++) {
+                final var theSpans = spans[i];
+                var theCount = 0;
+                while (theSpans.nextStartPosition() != Spans.NO_MORE_POSITIONS) {
+                    if (theCount == starts[i].length) {
+                        starts[i] = ArrayUtil.grow(starts[i]);
+                        ends[i] = ArrayUtil.grow(ends[i], starts[i].length);
+                    }
+                    starts[i][theCount] = theSpans.startPosition();
+                    ends[i][theCount] = theSpans.endPosition();
+                    theCount++;
+                }
+                counts[i] = theCount;
+            }
+        }
+
+        // All clauses in query order without any gap, see NearSpansOrdered
+        private void computeExactFreq() {
+            exactFreq = 0;
+            for (var i = 1; i < spans.length; i++) {
+                cursors[i] = 0;
+            }
+            for (var theFirst = 0; theFirst < counts[0]; theFirst++) {
+                var thePreviousEnd = ends[0][theFirst];
+                var theWidth = 0;
+                for (var i = 1; i < spans.length; i++) {
+                    while (cursors[i] < counts[i] && starts[i][cursors[i]] < thePreviousEnd) {
+                        cursors[i]++;
+                    }
+                    if (cursors[i] == counts[i]) {
+                        return;
+                    }
+                    theWidth += starts[i][cursors[i]] - thePreviousEnd;
+                    thePreviousEnd = ends[i][cursors[i]];
+                }
+                if (theWidth <= 0) {
+                    exactFreq = (float) (exactFreq + 1d / (1d + theWidth));
+                }
+            }
+        }
+
+        // Moves a window over the clause positions in any order, see NearSpansUnordered.
+        // Every window is a match for all slops greater or equal to its number of gaps.
+        private void computeSlopFreqs() {
+            Arrays.fill(slopFreqs, 0f);
+            window.clear();
+            var theTotalLength = 0;
+            var theMaxEnd = -1;
+            for (var i = 0; i < spans.length; i++) {
+                cursors[i] = 0;
+                window.add(i);
+                theMaxEnd = Math.max(theMaxEnd, ends[i][0]);
+                theTotalLength += ends[i][0] - starts[i][0];
+            }
+            while (true) {
+                final int theTop = window.top();
+                final var theWidth = theMaxEnd - starts[theTop][cursors[theTop]];
+                for (var theSlop = Math.max(theWidth - theTotalLength, 0); theSlop < MAX_EDIT_DISTANCE; theSlop++) {
+                    slopFreqs[theSlop] = (float) (slopFreqs[theSlop] + 1d / (1d + theWidth));
+                }
+
+                theTotalLength -= ends[theTop][cursors[theTop]] - starts[theTop][cursors[theTop]];
+                cursors[theTop]++;
+                if (cursors[theTop] == counts[theTop]) {
+                    return;
+                }
+                theTotalLength += ends[theTop][cursors[theTop]] - starts[theTop][cursors[theTop]];
+                theMaxEnd = Math.max(theMaxEnd, ends[theTop][cursors[theTop]]);
+                window.updateTop();
+            }
+        }
+
+        @Override
+        public float score() throws IOException {
+            if (exactScorer == null) {
+                return 0;
+            }
+            final var theDoc = docID();
+            double theScore = 0;
+            if (exactFreq > 0) {
+                theScore += exactScorer.score(theDoc, exactFreq);
+            }
+            for (var theSlop = 0; theSlop < MAX_EDIT_DISTANCE; theSlop++) {
+                if (slopFreqs[theSlop] > 0) {
+                    theScore += slopScorers[theSlop].score(theDoc, slopFreqs[theSlop]);
+                }
+            }
+            return (float) theScore;
+        }
+
+        @Override
+        public float getMaxScore(final int aUpTo) {
+            return Float.POSITIVE_INFINITY;
+        }
+    }
+}
@@ -0,0 +1,161 @@
+/*
+ * FXDesktopSearch Copyright 2013 Mirko Sertic
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package de.mirkosertic.desktopsearch;
+
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import lombok.extern.slf4j.Slf4j;
+import org.apache.commons.lang3.StringUtils;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.stream.Collectors;
+
+// The searches run most often recently, kept in a small file next to the configuration. They are replayed
+// to warm up new searchers, so the first search after startup or a commit finds warm caches. Every use
+// counts half after HALF_LIFE, so queries no longer used age out and make room for new ones
+@Slf4j
+class QueryLog {
+
+    static final int MAX_ENTRIES = 200;
+    static final long SAVE_INTERVAL = 30000;
+    static final long HALF_LIFE = 1000L * 60 * 60 * 24 * 7;
+
+    public static class Entry {
+
+        private String queryString;
+        private Map<String, String> drilldownFields;
+        private int count;
+        private double weight;
+        private long lastUsed;
+
+        private Entry() {
+            // Needed by Jackson
+        }
+
+        public Entry(final String aQueryString, final Map<String, String> aDrilldownFields) {
+            queryString = aQueryString;
+            drilldownFields = aDrilldownFields != null ? new HashMap<>(aDrilldownFields) : Collections.emptyMap();
+        }
+
+        public String getQueryString() {
+            return queryString;
+        }
+
+        public Map<String, String> getDrilldownFields() {
+            return Collections.unmodifiableMap(drilldownFields);
+        }
+
+        public int getCount() {
+            return count;
+        }
+
+        public double getWeight() {
+            return weight;
+        }
+
+        public long getLastUsed() {
+            return lastUsed;
+        }
+
+        private double weightAt(final long aTime) {
+            return weight * Math.pow(0.5, (aTime - lastUsed) / (double) HALF_LIFE);
+        }
+
+        private String key() {
+            return queryString + "|" + new TreeMap<>(drilldownFields);
+        }
+    }
+
+    private final File file;
+    private final Map<String, Entry> entries;
+    private long lastSaved;
+
+    public QueryLog(final File aFile) {
+        file = aFile;
+        entries = new LinkedHashMap<>();
+        if (file.exists()) {
+            try {
+                final List<Entry> theEntries = new ObjectMapper().readValue(file, new TypeReference<List<Entry>>() {});
+                theEntries.forEach(t -> {
+                    // Written before uses aged
+                    if (t.weight == 0) {
+                        t.weight = t.count;
+                    }
+                    entries.put(t.key(), t);
+                });
+            } catch (final IOException e) {
+                log.warn("Cannot read query log {}, starting with an empty one", file, e);
+            }
+        }
+    }
+
+    // Most used first, and of equally used ones the most recent
+    private static Comparator<Entry> mostUsedAt(final long aTime) {
+        return Comparator.comparingDouble((Entry t) -> t.weightAt(aTime)).thenComparingLong(Entry::getLastUsed).reversed();
+    }
+
+    public void record(final String aQueryString, final Map<String, String> aDrilldownFields) {
+        record(aQueryString, aDrilldownFields, System.currentTimeMillis());
+    }
+
+    synchronized void record(final String aQueryString, final Map<String, String> aDrilldownFields, final long aTime) {
+        if (StringUtils.isBlank(aQueryString)) {
+            return;
+        }
+        final var theEntry = new Entry(StringUtils.normalizeSpace(aQueryString), aDrilldownFields);
+        final var theExisting = entries.computeIfAbsent(theEntry.key(), k -> theEntry);
+        theExisting.count++;
+        theExisting.weight = theExisting.weightAt(aTime) + 1;
+        theExisting.lastUsed = aTime;
+
+        // The query just recorded is never the one evicted
+        if (entries.size() > MAX_ENTRIES) {
+            entries.values().stream()
+                    .filter(t -> t != theExisting)
+                    .max(mostUsedAt(aTime))
+                    .ifPresent(t -> entries.remove(t.key()));
+        }
+        if (aTime - lastSaved > SAVE_INTERVAL) {
+            save();
+        }
+    }
+
+    public List<Entry> top(final int aNumber) {
+        return top(aNumber, System.currentTimeMillis());
+    }
+
+    synchronized List<Entry> top(final int aNumber, final long aTime) {
+        return entries.values().stream().sorted(mostUsedAt(aTime)).limit(aNumber).collect(Collectors.toList());
+    }
+
+    public synchronized void save() {
+        try {
+            new ObjectMapper().writeValue(file, new ArrayList<>(entries.values()));
+            lastSaved = System.currentTimeMillis();
+        } catch (final IOException e) {
+            log.warn("Cannot write query log {}", file, e);
+        }
+    }
+}
@@ -0,0 +1,193 @@
+/*
+ * FXDesktopSearch Copyright 2013 Mirko Sertic
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package de.mirkosertic.desktopsearch;
+
+import org.apache.commons.lang3.StringUtils;
+
+import java.time.LocalDate;
+import java.time.ZoneOffset;
+import java.time.format.DateTimeFormatter;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Locale;
+import java.util.regex.Pattern;
+
+// Range filters and sort order written into the query string, like modified>2019-06, size:1mb..10mb
+// or sort:date. They are removed from the text search and run as filter queries, which Solr caches
+class QueryOptions {
+
+    static final String SORT_RELEVANCE = "score desc," + IndexFields.UNIQUEID + " asc";
+    static final String SORT_DATE = IndexFields.LASTMODIFIED + " desc," + IndexFields.UNIQUEID + " asc";
+    static final String SORT_SIZE = IndexFields.FILESIZE + " desc," + IndexFields.UNIQUEID + " asc";
+
+    private static final Pattern RANGE = Pattern.compile("(modified|size)([:<>])(.+)");
+    private static final Pattern DATE = Pattern.compile("(\\d{4})(?:-(\\d{1,2})(?:-(\\d{1,2}))?)?");
+    private static final Pattern SIZE = Pattern.compile("(\\d+)(b|kb|mb|gb)?");
+
+    private final String queryString;
+    private final List<String> filterQueries;
+    private final String sort;
+
+    private QueryOptions(final String aQueryString, final List<String> aFilterQueries, final String aSort) {
+        queryString = aQueryString;
+        filterQueries = aFilterQueries;
+        sort = aSort;
+    }
+
+    public static QueryOptions parse(final String aQueryString) {
+        final List<String> theQuery = new ArrayList<>();
+        final List<String> theFilters = new ArrayList<>();
+        var theSort = SORT_RELEVANCE;
+        for (final var theToken : StringUtils.split(aQueryString, ' ')) {
+            final var theLowerCase = theToken.toLowerCase(Locale.ROOT);
+            if ("sort:date".equals(theLowerCase)) {
+                theSort = SORT_DATE;
+            } else if ("sort:size".equals(theLowerCase)) {
+                theSort = SORT_SIZE;
+            } else if ("sort:relevance".equals(theLowerCase)) {
+                theSort = SORT_RELEVANCE;
+            } else {
+                final var theFilter = filterOf(theLowerCase);
+                if (theFilter != null) {
+                    theFilters.add(theFilter);
+                } else {
+                    // Anything we do not understand is searched for as it is
+                    theQuery.add(theToken);
+                }
+            }
+        }
+        return new QueryOptions(String.join(" ", theQuery), Collections.unmodifiableList(theFilters), theSort);
+    }
+
+    private static String filterOf(final String aToken) {
+        final var theMatcher = RANGE.matcher(aToken);
+        if (!theMatcher.matches()) {
+            return null;
+        }
+        final var theDates = "modified".equals(theMatcher.group(1));
+        final var theField = theDates ? IndexFields.LASTMODIFIED : IndexFields.FILESIZE;
+        final var theOperator = theMatcher.group(2);
+        final var theValue = theMatcher.group(3);
+
+        final String theFrom;
+        final String theTo;
+        if (":".equals(theOperator)) {
+            final var theSeparator = theValue.indexOf("..");
+            final var theLower = theSeparator < 0 ? theValue : theValue.substring(0, theSeparator);
+            final var theUpper = theSeparator < 0 ? theValue : theValue.substring(theSeparator + 2);
+            theFrom = theLower.isEmpty() ? "*" : theDates ? startOf(theLower) : sizeOf(theLower);
+            theTo = theUpper.isEmpty() ? "*" : theDates ? endOf(theUpper) : sizeOf(theUpper);
+            if (theFrom == null || theTo == null) {
+                return null;
+            }
+            // Dates cover whole periods, so the end is the exclusive start of the following one
+            return theField + ":[" + theFrom + " TO " + theTo + (theDates && !"*".equals(theTo) ? "}" : "]");
+        }
+
+        final var theBound = theDates ? ">".equals(theOperator) ? endOf(theValue) : startOf(theValue) : sizeOf(theValue);
+        if (theBound == null) {
+            return null;
+        }
+        if (">".equals(theOperator)) {
+            return theField + ":" + (theDates ? "[" : "{") + theBound + " TO *]";
+        }
+        return theField + ":[* TO " + theBound + "}";
+    }
+
+    // Start and exclusive end of a year, a month or a day, as given by a date facet
+    public static String[] periodBounds(final String aPeriod) {
+        final var thePeriod = periodOf(aPeriod);
+        if (thePeriod == null) {
+            return null;
+        }
+        return new String[] {format(thePeriod[0]), format(thePeriod[1])};
+    }
+
+    public static String periodFilter(final String aField, final String aPeriod) {
+        final var theBounds = periodBounds(aPeriod);
+        return theBounds != null ? aField + ":[" + theBounds[0] + " TO " + theBounds[1] + "}" : null;
+    }
+
+    // A year, a month or a day, as the start of the period and the start of the period after it
+    private static LocalDate[] periodOf(final String aValue) {
+        final var theMatcher = DATE.matcher(aValue);
+        if (!theMatcher.matches()) {
+            return null;
+        }
+        try {
+            final var theYear = Integer.parseInt(theMatcher.group(1));
+            if (theMatcher.group(3) != null) {
+                final var theDay = LocalDate.of(theYear, Integer.parseInt(theMatcher.group(2)), Integer.parseInt(theMatcher.group(3)));
+                return new LocalDate[] {theDay, theDay.plusDays(1)};
+            }
+            if (theMatcher.group(2) != null) {
+                final var theMonth = LocalDate.of(theYear, Integer.parseInt(theMatcher.group(2)), 1);
+                return new LocalDate[] {theMonth, theMonth.plusMonths(1)};
+            }
+            final var theStart = LocalDate.of(theYear, 1, 1);
+            return new LocalDate[] {theStart, theStart.plusYears(1)};
+        } catch (final RuntimeException e) {
+            return null;
+        }
+    }
+
+    private static String startOf(final String aValue) {
+        final var thePeriod = periodOf(aValue);
+        return thePeriod != null ? format(thePeriod[0]) : null;
+    }
+
+    private static String endOf(final String aValue) {
+        final var thePeriod = periodOf(aValue);
+        return thePeriod != null ? format(thePeriod[1]) : null;
+    }
+
+    private static String format(final LocalDate aDate) {
+        return DateTimeFormatter.ISO_INSTANT.format(aDate.atStartOfDay(ZoneOffset.UTC));
+    }
+
+    private static String sizeOf(final String aValue) {
+        final var theMatcher = SIZE.matcher(aValue);
+        if (!theMatcher.matches()) {
+            return null;
+        }
+        var theFactor = 1L;
+        if ("kb".equals(theMatcher.group(2))) {
+            theFactor = 1024L;
+        } else if ("mb".equals(theMatcher.group(2))) {
+            theFactor = 1024L * 1024;
+        } else if ("gb".equals(theMatcher.group(2))) {
+            theFactor = 1024L * 1024 * 1024;
+        }
+        try {
+            return Long.toString(Math.multiplyExact(Long.parseLong(theMatcher.group(1)), theFactor));
+        } catch (final ArithmeticException | NumberFormatException e) {
+            return null;
+        }
+    }
+
+    public String getQueryString() {
+        return queryString;
+    }
+
+    public List<String> getFilterQueries() {
+        return filterQueries;
+    }
+
+    public String getSort() {
+        return sort;
+    }
+}
@@ -22,13 +22,10 @@ import org.apache.lucene.analysis.tokenattributes.CharTermAttribute;
 import org.apache.lucene.index.Term;
 import org.apache.lucene.search.BooleanClause;
 import org.apache.lucene.search.BooleanQuery;
-import org.apache.lucene.search.BoostQuery;
 import org.apache.lucene.search.FuzzyQuery;
 import org.apache.lucene.search.Query;
 import org.apache.lucene.search.TermQuery;
-import org.apache.lucene.search.WildcardQuery;
 import org.apache.lucene.search.spans.SpanMultiTermQueryWrapper;
-import org.apache.lucene.search.spans.SpanNearQuery;
 import org.apache.lucene.search.spans.SpanQuery;
 import org.apache.lucene.search.spans.SpanTermQuery;
 
@@ -60,7 +57,7 @@ class QueryParser {
             throws IOException {
         for (final var theTerm : aTermList) {
             if (QueryUtils.isWildCard(theTerm)) {
-                aQuery.add(new WildcardQuery(new Term(aFieldName, theTerm)), aOccour);
+                aQuery.add(QueryUtils.wildcardQuery(aFieldName, theTerm), aOccour);
             } else if (QueryUtils.isFuzzy(theTerm)) {
                 aQuery.add(new FuzzyQuery(new Term(aFieldName, theTerm)), aOccour);
             } else {
@@ -86,7 +83,7 @@ class QueryParser {
             final List<SpanQuery> theSpans = new ArrayList<>();
             for (final var theTerm : theTokenizer.getRequiredTerms()) {
                 if (QueryUtils.isWildCard(theTerm)) {
-                    theSpans.add(new SpanMultiTermQueryWrapper<>(new WildcardQuery(new Term(aSearchField, theTerm))));
+                    theSpans.add(QueryUtils.wildcardSpanQuery(aSearchField, theTerm));
                 } else if (QueryUtils.isFuzzy(theTerm)) {
                     theSpans.add(new SpanMultiTermQueryWrapper<>(new FuzzyQuery(new Term(aSearchField, theTerm))));
                 } else {
@@ -99,17 +96,9 @@ class QueryParser {
             }
 
             if (theSpans.size() > 1) {
-                // This is the original span, so we boost it a lot
-                final SpanQuery theExactMatchQuery = new SpanNearQuery(theSpans.toArray(new SpanQuery[theSpans.size()]), 0, true);
-                theResult.add(new BoostQuery(theExactMatchQuery, 61), BooleanClause.Occur.SHOULD);
-
-                // We expect a maximum edit distance of 10 between the searched terms in any order
-                // This seems to be the most useful value
-                final var theMaxEditDistance = 10;
-                for (var theSlop = 0; theSlop < theMaxEditDistance; theSlop++) {
-                    final SpanQuery theNearQuery = new SpanNearQuery(theSpans.toArray(new SpanQuery[theSpans.size()]), theSlop, false);
-                    theResult.add(new BoostQuery(theNearQuery, 50 + theMaxEditDistance - theSlop), BooleanClause.Occur.SHOULD);
-                }
+                // The exact span is boosted a lot, and we expect a maximum edit distance of 10 between the
+                // searched terms in any order. All of this is scored in a single pass over the positions
+                theResult.add(new ProximityQuery(aSearchField, theSpans), BooleanClause.Occur.SHOULD);
             }
 
             // Finally, we just add simple term queries, but do not boost them
@@ -26,9 +26,12 @@ public class QueryResult {
     private final List<FacetDimension> facetDimensions;
     private final long totalDocuments;
     private final List<QueryFilter> activeFilters;
+    private final String nextPageLink;
 
-    public QueryResult(final String searchTerm, final long elapsedTime, final List<QueryResultDocument> documents, final List<FacetDimension> aFacetDimensions, final long totalDocuments, final List<QueryFilter> activeFilters) {
+    public QueryResult(final String searchTerm, final long elapsedTime, final List<QueryResultDocument> documents, final List<FacetDimension> aFacetDimensions, final long totalDocuments, final List<QueryFilter> activeFilters,
+            final String aNextPageLink) {
         this.searchTerm = searchTerm;
+        this.nextPageLink = aNextPageLink;
         this.elapsedTime = elapsedTime;
         this.documents = documents;
         this.totalDocuments = totalDocuments;
@@ -36,6 +39,10 @@ public class QueryResult {
         this.activeFilters = activeFilters;
     }
 
+    public QueryResult withElapsedTime(final long aElapsedTime) {
+        return new QueryResult(searchTerm, aElapsedTime, documents, facetDimensions, totalDocuments, activeFilters, nextPageLink);
+    }
+
     public long getElapsedTime() {
         return elapsedTime;
     }
@@ -77,4 +84,9 @@ public class QueryResult {
     public List<QueryFilter> getActiveFilters() {
         return activeFilters;
     }
+
+    // Null if there are no more results
+    public String getNextPageLink() {
+        return nextPageLink;
+    }
 }
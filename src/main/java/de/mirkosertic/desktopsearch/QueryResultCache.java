@@ -0,0 +1,120 @@
+/*
+ * FXDesktopSearch Copyright 2013 Mirko Sertic
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package de.mirkosertic.desktopsearch;
+
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.cache.CacheStats;
+import lombok.extern.slf4j.Slf4j;
+import org.apache.commons.lang3.StringUtils;
+
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.atomic.AtomicLong;
+
+// Finished query results per query, drilldown, page and index version, so going back and forth between
+// result pages or toggling a facet does not run the whole search again
+@Slf4j
+class QueryResultCache {
+
+    static final int MAX_CACHED_RESULTS = 100;
+
+    public static class Key {
+
+        private final String queryString;
+        private final String basePath;
+        private final Map<String, String> drilldownFields;
+        private final String cursorMark;
+
+        public Key(final String aQueryString, final String aBasePath, final Map<String, String> aDrilldownFields, final String aCursorMark) {
+            queryString = StringUtils.normalizeSpace(aQueryString);
+            basePath = aBasePath;
+            drilldownFields = aDrilldownFields != null ? new HashMap<>(aDrilldownFields) : Collections.emptyMap();
+            cursorMark = aCursorMark;
+        }
+
+        @Override
+        public boolean equals(final Object o) {
+            if (this == o) {
+                return true;
+            }
+            if (o == null || getClass() != o.getClass()) {
+                return false;
+            }
+            final var theOther = (Key) o;
+            return queryString.equals(theOther.queryString) && Objects.equals(basePath, theOther.basePath)
+                    && drilldownFields.equals(theOther.drilldownFields) && Objects.equals(cursorMark, theOther.cursorMark);
+        }
+
+        @Override
+        public int hashCode() {
+            return Objects.hash(queryString, basePath, drilldownFields, cursorMark);
+        }
+    }
+
+    private static class Entry {
+
+        private final long searcherVersion;
+        private final QueryResult result;
+
+        private Entry(final long aSearcherVersion, final QueryResult aResult) {
+            searcherVersion = aSearcherVersion;
+            result = aResult;
+        }
+    }
+
+    private final Cache<Key, Entry> results;
+    private final AtomicLong searcherVersion;
+
+    public QueryResultCache() {
+        results = CacheBuilder.newBuilder().maximumSize(MAX_CACHED_RESULTS).recordStats().build();
+        searcherVersion = new AtomicLong(-1);
+    }
+
+    public void searcherOpened(final long aSearcherVersion) {
+        if (searcherVersion.getAndAccumulate(aSearcherVersion, Math::max) < aSearcherVersion) {
+            results.invalidateAll();
+        }
+    }
+
+    // Cached results were computed with the previous settings
+    public void invalidateAll() {
+        results.invalidateAll();
+    }
+
+    public QueryResult get(final Key aKey) {
+        final var theEntry = results.getIfPresent(aKey);
+        final var theStats = results.stats();
+        log.debug("Query result cache hit rate {} with {} hits and {} misses", theStats.hitRate(), theStats.hitCount(), theStats.missCount());
+        if (theEntry != null && theEntry.searcherVersion >= searcherVersion.get()) {
+            return theEntry.result;
+        }
+        return null;
+    }
+
+    // Results computed on an older searcher are not cached, as they are already outdated
+    public void put(final Key aKey, final long aSearcherVersion, final QueryResult aResult) {
+        if (aSearcherVersion >= searcherVersion.get()) {
+            results.put(aKey, new Entry(aSearcherVersion, aResult));
+        }
+    }
+
+    public CacheStats stats() {
+        return results.stats();
+    }
+}
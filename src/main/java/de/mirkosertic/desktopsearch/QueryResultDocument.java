@@ -15,10 +15,6 @@
  */
 package de.mirkosertic.desktopsearch;
 
-import java.util.ArrayList;
-import java.util.Collections;
-import java.util.List;
-
 public class QueryResultDocument {
 
     private final String title;
@@ -29,8 +25,6 @@ public class QueryResultDocument {
 
     private final long lastModified;
 
-    private final List<String> similarFiles;
-
     private final int documentID;
 
     private final int normalizedScore;
@@ -39,14 +33,16 @@ public class QueryResultDocument {
 
     private final boolean previewAvailable;
 
-    public QueryResultDocument(final int aDocumentID, final String aTitle, final String aFileName, final String aHighlighterResult, final long aLastModified, final int aNormalizedScore, final String aUniqueID, final boolean aPreviewAvailable) {
+    private final boolean verified;
+
+    public QueryResultDocument(final int aDocumentID, final String aTitle, final String aFileName, final String aHighlighterResult, final long aLastModified, final int aNormalizedScore, final String aUniqueID, final boolean aPreviewAvailable, final boolean aVerified) {
         previewAvailable = aPreviewAvailable;
+        verified = aVerified;
         title = aTitle;
         fileName = aFileName;
         highlightedSearchResult = aHighlighterResult;
         lastModified = aLastModified;
         documentID = aDocumentID;
-        similarFiles = new ArrayList<>();
         normalizedScore = aNormalizedScore;
         uniqueID = aUniqueID;
     }
@@ -67,20 +63,10 @@ public class QueryResultDocument {
         return lastModified;
     }
 
-    public List<String> getSimilarFiles() {
-        return Collections.unmodifiableList(similarFiles);
-    }
-
     public int getDocumentID() {
         return documentID;
     }
 
-    public void addSimilarFile(final String aFileName) {
-        if (!similarFiles.contains(aFileName)) {
-            similarFiles.add(aFileName);
-        }
-    }
-
     public int getNormalizedScore() {
         return normalizedScore;
     }
@@ -92,4 +78,9 @@ public class QueryResultDocument {
     public boolean isPreviewAvailable() {
         return previewAvailable;
     }
+
+    // False if it was not yet checked whether the file still exists
+    public boolean isVerified() {
+        return verified;
+    }
 }
@@ -15,10 +15,23 @@
  */
 package de.mirkosertic.desktopsearch;
 
+import org.apache.lucene.analysis.reverse.ReverseStringFilter;
+import org.apache.lucene.index.Term;
+import org.apache.lucene.search.MultiTermQuery;
+import org.apache.lucene.search.WildcardQuery;
+import org.apache.lucene.search.spans.FieldMaskingSpanQuery;
+import org.apache.lucene.search.spans.SpanMultiTermQueryWrapper;
+import org.apache.lucene.search.spans.SpanQuery;
+import org.apache.lucene.util.automaton.Automata;
+
 public final class QueryUtils {
 
     public static final String ASTERISK = "*";
 
+    // Must match the NGramFilterFactory of the content_ngram field
+    static final int MIN_NGRAM_SIZE = 3;
+    static final int MAX_NGRAM_SIZE = 8;
+
     private QueryUtils() {
     }
 
@@ -29,4 +42,48 @@ public final class QueryUtils {
     public static boolean isFuzzy(final String aTerm) {
         return aTerm.startsWith("~") && aTerm.length() > 1;
     }
+
+    private static boolean isWildcardChar(final char aChar) {
+        return aChar == WildcardQuery.WILDCARD_STRING || aChar == WildcardQuery.WILDCARD_CHAR;
+    }
+
+    // A wildcard with a literal prefix only scans the matching part of the term dictionary. Everything
+    // else would scan all terms, so infix and leading wildcards are answered by the copy fields of content
+    public static MultiTermQuery wildcardQuery(final String aField, final String aPattern) {
+        final var theOriginal = new WildcardQuery(new Term(aField, aPattern));
+        if (!IndexFields.CONTENT.equals(aField) || aPattern.isEmpty() || !isWildcardChar(aPattern.charAt(0))
+                || aPattern.indexOf(WildcardQuery.WILDCARD_ESCAPE) >= 0) {
+            return theOriginal;
+        }
+
+        // *foo* is a single n-gram lookup
+        if (aPattern.length() >= MIN_NGRAM_SIZE + 2 && aPattern.length() <= MAX_NGRAM_SIZE + 2
+                && aPattern.charAt(0) == WildcardQuery.WILDCARD_STRING
+                && aPattern.charAt(aPattern.length() - 1) == WildcardQuery.WILDCARD_STRING) {
+            final var theInfix = aPattern.substring(1, aPattern.length() - 1);
+            if (!isWildCard(theInfix)) {
+                return new RoutedWildcardQuery(IndexFields.CONTENT_NGRAM, Automata.makeString(theInfix), theOriginal);
+            }
+        }
+
+        // *foo and *f?o become a prefix wildcard on the reversed tokens
+        if (!isWildcardChar(aPattern.charAt(aPattern.length() - 1))) {
+            final var theReversed = ReverseStringFilter.START_OF_HEADING_MARKER + new StringBuilder(aPattern).reverse().toString();
+            return new RoutedWildcardQuery(IndexFields.CONTENT_REVERSED,
+                    WildcardQuery.toAutomaton(new Term(IndexFields.CONTENT_REVERSED, theReversed)), theOriginal);
+        }
+
+        return theOriginal;
+    }
+
+    // Copy fields share the positions of the content field, so their spans can be combined with content spans
+    public static SpanQuery wildcardSpanQuery(final String aField, final String aPattern) {
+        final var theQuery = wildcardQuery(aField, aPattern);
+        final var theSpan = new SpanMultiTermQueryWrapper<>(theQuery);
+        if (theQuery instanceof RoutedWildcardQuery) {
+            theSpan.setRewriteMethod(((RoutedWildcardQuery) theQuery).spanRewriteMethod());
+            return new FieldMaskingSpanQuery(theSpan, aField);
+        }
+        return theSpan;
+    }
 }
@@ -0,0 +1,97 @@
+/*
+ * FXDesktopSearch Copyright 2013 Mirko Sertic
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package de.mirkosertic.desktopsearch;
+
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import lombok.extern.slf4j.Slf4j;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+
+// Checks in the background whether the files of search results still exist, so searches never wait for
+// the file system. Files that are gone are handed to the stale file handler, which removes them from the index
+@Slf4j
+class ResultValidator {
+
+    static final int MAX_VERIFIED_FILES = 10000;
+    static final long VERIFICATION_TIMEOUT_SECONDS = 60;
+
+    private final Consumer<File> staleFileHandler;
+    private final Cache<File, Boolean> verifiedFiles;
+    private final Set<File> pendingFiles;
+    private final ExecutorService executor;
+
+    public ResultValidator(final Consumer<File> aStaleFileHandler) {
+        staleFileHandler = aStaleFileHandler;
+        verifiedFiles = CacheBuilder.newBuilder()
+                .maximumSize(MAX_VERIFIED_FILES)
+                .expireAfterWrite(VERIFICATION_TIMEOUT_SECONDS, TimeUnit.SECONDS)
+                .build();
+        pendingFiles = ConcurrentHashMap.newKeySet();
+        executor = Executors.newSingleThreadExecutor(r -> {
+            final var theThread = new Thread(r, "ResultValidator");
+            theThread.setDaemon(true);
+            return theThread;
+        });
+    }
+
+    // True if the file was recently seen on disk
+    public boolean isVerified(final File aFile) {
+        return verifiedFiles.getIfPresent(aFile) != null;
+    }
+
+    public void validate(final Collection<File> aFiles) {
+        final List<File> theBatch = new ArrayList<>();
+        for (final var theFile : aFiles) {
+            if (!isVerified(theFile) && pendingFiles.add(theFile)) {
+                theBatch.add(theFile);
+            }
+        }
+        if (!theBatch.isEmpty()) {
+            executor.execute(() -> check(theBatch));
+        }
+    }
+
+    private void check(final List<File> aFiles) {
+        for (final var theFile : aFiles) {
+            try {
+                if (theFile.exists()) {
+                    verifiedFiles.put(theFile, Boolean.TRUE);
+                } else {
+                    log.info("{} is no longer on disk", theFile);
+                    staleFileHandler.accept(theFile);
+                }
+            } catch (final Exception e) {
+                log.error("Error validating {}", theFile, e);
+            } finally {
+                pendingFiles.remove(theFile);
+            }
+        }
+    }
+
+    public void shutdown() {
+        executor.shutdownNow();
+    }
+}
@@ -0,0 +1,87 @@
+/*
+ * FXDesktopSearch Copyright 2013 Mirko Sertic
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package de.mirkosertic.desktopsearch;
+
+import org.apache.lucene.index.IndexReader;
+import org.apache.lucene.index.Term;
+import org.apache.lucene.search.AutomatonQuery;
+import org.apache.lucene.search.MultiTermQuery;
+import org.apache.lucene.search.Query;
+import org.apache.lucene.search.QueryVisitor;
+import org.apache.lucene.search.WildcardQuery;
+import org.apache.lucene.search.spans.SpanMultiTermQueryWrapper;
+import org.apache.lucene.search.spans.SpanQuery;
+import org.apache.lucene.util.automaton.Automaton;
+
+import java.io.IOException;
+
+// A wildcard on the content field, answered by a cheaper lookup in one of its copy fields.
+// The original wildcard is still reported to visitors, so highlighting works on the content field.
+class RoutedWildcardQuery extends AutomatonQuery {
+
+    private final WildcardQuery original;
+
+    public RoutedWildcardQuery(final String aField, final Automaton aAutomaton, final WildcardQuery aOriginal) {
+        super(new Term(aField, aOriginal.getTerm().text()), aAutomaton);
+        original = aOriginal;
+        setRewriteMethod(new RewriteMethod() {
+            @Override
+            public Query rewrite(final IndexReader aReader, final MultiTermQuery aQuery) throws IOException {
+                // Indexes written before the copy field existed still get the original wildcard
+                if (isIndexed(aReader)) {
+                    return CONSTANT_SCORE_REWRITE.rewrite(aReader, aQuery);
+                }
+                return original;
+            }
+        });
+    }
+
+    private boolean isIndexed(final IndexReader aReader) throws IOException {
+        for (final var theLeaf : aReader.leaves()) {
+            if (theLeaf.reader().terms(getField()) != null) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    // Span clauses are rewritten by their wrapper, so they need the same fallback
+    public SpanMultiTermQueryWrapper.SpanRewriteMethod spanRewriteMethod() {
+        return new SpanMultiTermQueryWrapper.SpanRewriteMethod() {
+            @Override
+            public SpanQuery rewrite(final IndexReader aReader, final MultiTermQuery aQuery) throws IOException {
+                if (isIndexed(aReader)) {
+                    return SpanMultiTermQueryWrapper.SCORING_SPAN_QUERY_REWRITE.rewrite(aReader, aQuery);
+                }
+                return SpanMultiTermQueryWrapper.SCORING_SPAN_QUERY_REWRITE.rewrite(aReader, original);
+            }
+        };
+    }
+
+    public WildcardQuery getOriginal() {
+        return original;
+    }
+
+    @Override
+    public void visit(final QueryVisitor aVisitor) {
+        original.visit(aVisitor);
+    }
+
+    @Override
+    public String toString(final String aField) {
+        return getField() + ":" + original.getTerm().text();
+    }
+}
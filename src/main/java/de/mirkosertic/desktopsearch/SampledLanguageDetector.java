@@ -0,0 +1,106 @@
+/*
+ * FXDesktopSearch Copyright 2013 Mirko Sertic
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package de.mirkosertic.desktopsearch;
+
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.hash.Hashing;
+import org.apache.tika.langdetect.OptimaizeLangDetector;
+import org.apache.tika.language.detect.LanguageDetector;
+import org.apache.tika.language.detect.LanguageResult;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+
+class SampledLanguageDetector {
+
+    static final int WINDOW_SIZE = 2048;
+
+    private static final float CONFIDENCE_THRESHOLD = 0.95f;
+    private static final int CACHE_SIZE = 4096;
+
+    private final LanguageDetector languageDetector;
+    private final Cache<String, LanguageResult> resultCache;
+
+    public SampledLanguageDetector() throws IOException {
+        languageDetector = new OptimaizeLangDetector().loadModels();
+        resultCache = CacheBuilder.newBuilder().maximumSize(CACHE_SIZE).build();
+    }
+
+    public LanguageResult detect(final String aText) {
+        final var theWindows = windowsFor(aText);
+
+        final var theHasher = Hashing.murmur3_128().newHasher();
+        theHasher.putInt(aText.length());
+        for (final var theWindow : theWindows) {
+            theHasher.putString(theWindow, StandardCharsets.UTF_8);
+        }
+        final var theKey = theHasher.hash().toString();
+
+        final var theCached = resultCache.getIfPresent(theKey);
+        if (theCached != null) {
+            return theCached;
+        }
+
+        var theResult = LanguageResult.NULL;
+        // The detector keeps the added text as internal state, so it cannot be used concurrently
+        synchronized (languageDetector) {
+            languageDetector.reset();
+            for (final var theWindow : theWindows) {
+                languageDetector.addText(theWindow);
+                theResult = languageDetector.detect();
+                if (theResult.getRawScore() >= CONFIDENCE_THRESHOLD) {
+                    break;
+                }
+            }
+            languageDetector.reset();
+        }
+
+        resultCache.put(theKey, theResult);
+        return theResult;
+    }
+
+    static List<CharSequence> windowsFor(final String aText) {
+        final List<CharSequence> theResult = new ArrayList<>();
+        final var theLength = aText.length();
+        if (theLength <= WINDOW_SIZE * 3) {
+            theResult.add(aText);
+            return theResult;
+        }
+
+        theResult.add(window(aText, 0));
+        theResult.add(window(aText, (theLength - WINDOW_SIZE) / 2));
+        theResult.add(window(aText, theLength - WINDOW_SIZE));
+        return theResult;
+    }
+
+    private static CharSequence window(final String aText, final int aStart) {
+        // Move the window start to the next word boundary, so we do not feed partial words
+        var theStart = aStart;
+        if (theStart > 0) {
+            final var theLimit = Math.min(aText.length(), aStart + 32);
+            while (theStart < theLimit && !Character.isWhitespace(aText.charAt(theStart - 1))) {
+                theStart++;
+            }
+            if (theStart == theLimit) {
+                theStart = aStart;
+            }
+        }
+        return aText.subSequence(theStart, Math.min(aText.length(), theStart + WINDOW_SIZE));
+    }
+}
@@ -72,32 +72,29 @@ class SearchPhraseSuggester {
 
         final var theTokens = toTokens(aFieldName, aPhrase);
 
+        // Multi term spans are rewritten lazily by the searcher, and leading wildcards use the copy fields
         final var theSpanQueries = theTokens.stream().map(s -> {
             if (QueryUtils.isWildCard(s)) {
-                var theWildcardQuery = new WildcardQuery(new Term(aFieldName, s));
-                var theWrapper = new SpanMultiTermQueryWrapper(theWildcardQuery);
-                try {
-                    return theWrapper.getRewriteMethod().rewrite(indexSearcher.getIndexReader(), theWildcardQuery);
-                } catch (IOException e) {
-                    throw new RuntimeException(e);
-                }
+                return QueryUtils.wildcardSpanQuery(aFieldName, s);
             }
             return new SpanTermQuery(new Term(aFieldName, s));
         }).collect(Collectors.toList());
 
-        final Query theQuery;
-        if (theSpanQueries.size() > 1) {
-            theQuery = new SpanNearQuery(theSpanQueries.toArray(new SpanQuery[theSpanQueries.size()]), configuration.getSuggestionSlop(), configuration.isSuggestionInOrder());
-        } else {
-            theQuery = theSpanQueries.get(0);
-        }
+        final var theQuery = toQuery(theSpanQueries);
 
+        // The highlighter expands wildcards against the fragment text only, so it needs them on the field itself
+        final var theHighlightQuery = toQuery(theTokens.stream().map(s -> {
+            if (QueryUtils.isWildCard(s)) {
+                return new SpanMultiTermQueryWrapper<>(new WildcardQuery(new Term(aFieldName, s)));
+            }
+            return new SpanTermQuery(new Term(aFieldName, s));
+        }).collect(Collectors.toList()));
 
         log.info("created span query {}", theQuery);
 
         final var theResult = new ArrayList<Suggestion>();
 
-        final var theHighligher = new Highlighter((aSpan, tokenGroup) -> aSpan, new QueryScorer(theQuery));
+        final var theHighligher = new Highlighter((aSpan, tokenGroup) -> aSpan, new QueryScorer(theHighlightQuery));
 
         final TopDocs theDocs = indexSearcher.search(theQuery, configuration.getNumberOfSuggestions(), Sort.RELEVANCE);
         for (var i = 0; i<theDocs.scoreDocs.length; i++) {
@@ -122,6 +119,13 @@ class SearchPhraseSuggester {
         return theResult;
     }
 
+    private Query toQuery(final List<SpanQuery> aSpanQueries) {
+        if (aSpanQueries.size() > 1) {
+            return new SpanNearQuery(aSpanQueries.toArray(new SpanQuery[aSpanQueries.size()]), configuration.getSuggestionSlop(), configuration.isSuggestionInOrder());
+        }
+        return aSpanQueries.get(0);
+    }
+
     private String highlight(final String aPhrase, final List<String> aTokens) {
         var theResult = aPhrase;
         final var theTokens = aTokens.stream().map(String::toLowerCase).collect(Collectors.toSet());
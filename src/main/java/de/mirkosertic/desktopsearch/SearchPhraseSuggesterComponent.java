@@ -15,41 +15,153 @@
  */
 package de.mirkosertic.desktopsearch;
 
-import org.apache.lucene.analysis.Analyzer;
+import lombok.extern.slf4j.Slf4j;
+import org.apache.lucene.index.IndexReader;
 import org.apache.lucene.search.IndexSearcher;
-import org.apache.solr.common.params.SolrParams;
 import org.apache.solr.common.util.NamedList;
+import org.apache.solr.core.AbstractSolrEventListener;
+import org.apache.solr.core.CloseHook;
+import org.apache.solr.core.SolrCore;
 import org.apache.solr.handler.component.ResponseBuilder;
 import org.apache.solr.handler.component.SearchComponent;
+import org.apache.solr.search.SolrIndexSearcher;
+import org.apache.solr.util.plugin.SolrCoreAware;
 
 import java.io.IOException;
+import java.nio.file.Paths;
 import java.util.HashMap;
-import java.util.List;
 import java.util.Map;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
 
-public class SearchPhraseSuggesterComponent extends SearchComponent {
+@Slf4j
+public class SearchPhraseSuggesterComponent extends SearchComponent implements SolrCoreAware {
 
     public static final String ENABLED_PARAM = "fxsuggest.enabled";
     public static final String TOKEN_PARAM = "fxsuggest.q";
     public static final String SLOP_PARAM = "fxsuggest.slop";
     public static final String INORDER_PARAM = "fxsuggest.inorder";
     public static final String NUMBERSUGGEST_PARAM = "fxsuggest.numbersuggest";
+    public static final String VERSION_RESPONSE = "fxsuggest.version";
+    public static final String COMPLETE_RESPONSE = "fxsuggest.complete";
+
+    private PhraseSuggestionIndex phraseIndex;
+    private ThreadPoolExecutor phraseIndexUpdater;
+    // Holds a reference on the newest reader until its segments were added to the suggestion index. Only the
+    // newest one is worth adding, so readers replaced while the updater is busy are released right away
+    private final AtomicReference<IndexReader> pendingReader = new AtomicReference<>();
+
+    private static void release(final IndexReader aReader) {
+        try {
+            aReader.decRef();
+        } catch (final IOException e) {
+            log.warn("Error releasing index reader", e);
+        }
+    }
+
+    private void updatePhraseIndex() {
+        final var theReader = pendingReader.getAndSet(null);
+        if (theReader == null) {
+            return;
+        }
+        try {
+            phraseIndex.update(theReader);
+        } catch (final Exception e) {
+            log.error("Error updating phrase suggestion index", e);
+        } finally {
+            release(theReader);
+        }
+    }
+
+    @Override
+    public void inform(final SolrCore aCore) {
+        try {
+            phraseIndex = new PhraseSuggestionIndex(Paths.get(aCore.getDataDir(), "phrasesuggest"));
+        } catch (final IOException e) {
+            log.error("Cannot open phrase suggestion index, falling back to span suggestions", e);
+            return;
+        }
+        phraseIndexUpdater = new ThreadPoolExecutor(1, 1, 0, TimeUnit.MILLISECONDS, new LinkedBlockingQueue<>(), r -> {
+            final var theThread = new Thread(r, "Phrase suggestion index updater");
+            theThread.setDaemon(true);
+            theThread.setPriority(Thread.MIN_PRIORITY);
+            return theThread;
+        });
+
+        // New segments are added in the background, so opening a searcher is not delayed by the suggestion index
+        final var theListener = new AbstractSolrEventListener(aCore) {
+            @Override
+            public void newSearcher(final SolrIndexSearcher aNewSearcher, final SolrIndexSearcher aCurrentSearcher) {
+                final var theReader = aNewSearcher.getIndexReader();
+                theReader.incRef();
+                final var theReplaced = pendingReader.getAndSet(theReader);
+                if (theReplaced != null) {
+                    // An update is already scheduled, and adds the newer reader instead
+                    release(theReplaced);
+                    return;
+                }
+                try {
+                    phraseIndexUpdater.execute(SearchPhraseSuggesterComponent.this::updatePhraseIndex);
+                } catch (final RejectedExecutionException e) {
+                    // The core is already closing
+                    final var theDropped = pendingReader.getAndSet(null);
+                    if (theDropped != null) {
+                        release(theDropped);
+                    }
+                }
+            }
+        };
+        aCore.registerFirstSearcherListener(theListener);
+        aCore.registerNewSearcherListener(theListener);
+
+        aCore.addCloseHook(new CloseHook() {
+            @Override
+            public void preClose(final SolrCore aCore) {
+                // A pending reader is released, and the scheduled update finds nothing to do. The running one is
+                // not interrupted, as that would close the files of the suggestion index under its feet
+                final var theDropped = pendingReader.getAndSet(null);
+                if (theDropped != null) {
+                    release(theDropped);
+                }
+                phraseIndexUpdater.shutdown();
+            }
+
+            @Override
+            public void postClose(final SolrCore aCore) {
+                try {
+                    phraseIndex.close();
+                } catch (final IOException e) {
+                    log.warn("Error closing phrase suggestion index", e);
+                }
+            }
+        });
+    }
 
     @Override
     public void prepare(final ResponseBuilder aResponseBuilder) {
 
     }
 
-    @Override
-    public void process(final ResponseBuilder aResponseBuilder) throws IOException {
-        final var theRequestParams = aResponseBuilder.req.getParams();
-        if (!"true".equals(theRequestParams.get(ENABLED_PARAM))) {
-            return;
+    // Wildcards, fuzzy terms and exclusions are beyond a phrase lookup
+    private static boolean isPlainPhrase(final String aPhrase) {
+        for (final var theToken : aPhrase.split("\\s+")) {
+            if (QueryUtils.isWildCard(theToken) || QueryUtils.isFuzzy(theToken) || theToken.startsWith("-")) {
+                return false;
+            }
         }
+        return true;
+    }
 
-        final int theSlop = Integer.valueOf(theRequestParams.get(SLOP_PARAM));
-        final boolean theInOrder = Boolean.valueOf(theRequestParams.get(INORDER_PARAM));
-        final int theNumberSuggest = Integer.valueOf(theRequestParams.get(NUMBERSUGGEST_PARAM));
+    private PhraseSuggestionIndex.Completions suggest(final ResponseBuilder aResponseBuilder, final String aPhrase, final int aSlop,
+            final boolean aInOrder, final int aNumberSuggest) throws IOException {
+        // Phrases with wildcards, fuzzy terms or exclusions, and every phrase if the suggestion index could not be
+        // opened, are still completed from the matching documents
+        if (phraseIndex != null && isPlainPhrase(aPhrase)) {
+            return phraseIndex.lookup(aPhrase, aNumberSuggest);
+        }
 
         final IndexSearcher theSearcher = aResponseBuilder.req.getSearcher();
         final var theAnalyzer = aResponseBuilder.req.getSchema().getQueryAnalyzer();
@@ -58,23 +170,42 @@ public class SearchPhraseSuggesterComponent extends SearchComponent {
                 new SearchPhraseSuggester.SearchPhraseSuggesterConfiguration() {
                     @Override
                     public int getSuggestionSlop() {
-                        return theSlop;
+                        return aSlop;
                     }
 
                     @Override
                     public boolean isSuggestionInOrder() {
-                        return theInOrder;
+                        return aInOrder;
                     }
 
                     @Override
                     public int getNumberOfSuggestions() {
-                        return theNumberSuggest;
+                        return aNumberSuggest;
                     }
                 });
 
+        // Matching documents are only searched up to a limit, so there might always be more
+        return new PhraseSuggestionIndex.Completions(theSuggester.suggestSearchPhrase(IndexFields.CONTENT, aPhrase), false);
+    }
+
+    @Override
+    public void process(final ResponseBuilder aResponseBuilder) throws IOException {
+        // Every response tells the index version it was computed on, so results can be cached per version
+        aResponseBuilder.rsp.add(VERSION_RESPONSE, aResponseBuilder.req.getSearcher().getIndexReader().getVersion());
+
+        final var theRequestParams = aResponseBuilder.req.getParams();
+        if (!"true".equals(theRequestParams.get(ENABLED_PARAM))) {
+            return;
+        }
+
+        final int theSlop = Integer.valueOf(theRequestParams.get(SLOP_PARAM));
+        final boolean theInOrder = Boolean.valueOf(theRequestParams.get(INORDER_PARAM));
+        final int theNumberSuggest = Integer.valueOf(theRequestParams.get(NUMBERSUGGEST_PARAM));
+
         final var theResponse = new NamedList();
 
-        final var theResult = theSuggester.suggestSearchPhrase(IndexFields.CONTENT, theRequestParams.get(TOKEN_PARAM));
+        final var theCompletions = suggest(aResponseBuilder, theRequestParams.get(TOKEN_PARAM), theSlop, theInOrder, theNumberSuggest);
+        final var theResult = theCompletions.getSuggestions();
         for (var i = 0; i<theResult.size(); i++) {
             final var theSuggestion = theResult.get(i);
             final Map<String, String> theEntry = new HashMap<>();
@@ -85,6 +216,7 @@ public class SearchPhraseSuggesterComponent extends SearchComponent {
         }
 
         aResponseBuilder.rsp.add("fxsuggest", theResponse);
+        aResponseBuilder.rsp.add(COMPLETE_RESPONSE, theCompletions.isComplete());
     }
 
     @Override
@@ -19,6 +19,7 @@ import lombok.extern.slf4j.Slf4j;
 import org.apache.commons.codec.EncoderException;
 import org.apache.commons.codec.net.URLCodec;
 import org.apache.commons.lang3.StringUtils;
+import org.apache.solr.common.params.CursorMarkParams;
 
 import javax.servlet.ServletException;
 import javax.servlet.http.HttpServlet;
@@ -94,10 +95,25 @@ public class SearchServlet extends HttpServlet {
             }
         }
 
-        if (!StringUtils.isEmpty(theQueryString)) {
+        // Follow-up pages are loaded while scrolling, and only their result entries are rendered
+        final var theCursorMark = aRequest.getParameter(CursorMarkParams.CURSOR_MARK_PARAM);
+        final var theNextPage = !StringUtils.isEmpty(theCursorMark);
+
+        if (backend.isFailed()) {
+            aRequest.setAttribute("startupFailed", true);
+            aRequest.setAttribute("querystring", StringUtils.defaultString(theQueryString));
+        } else if (!backend.isReady()) {
+            // The index is still loading. A pending search reloads itself until it can be run
+            aRequest.setAttribute("warmingUp", true);
+            aRequest.setAttribute("querystring", StringUtils.defaultString(theQueryString));
+            if (!StringUtils.isEmpty(theQueryString)) {
+                aRequest.setAttribute("reloadUrl", theBasePath);
+            }
+        } else if (!StringUtils.isEmpty(theQueryString)) {
             aRequest.setAttribute("querystring", theQueryString);
             try {
-                aRequest.setAttribute("queryResult", backend.performQuery(theQueryString, theBasePath, theDrilldownDimensions));
+                aRequest.setAttribute("queryResult", backend.performQuery(theQueryString, theBasePath, theDrilldownDimensions,
+                        theNextPage ? theCursorMark : CursorMarkParams.CURSOR_MARK_START));
             } catch (final Exception e) {
                 log.error("Error running query {}", theQueryString, e);
             }
@@ -106,7 +122,8 @@ public class SearchServlet extends HttpServlet {
         }
 
         aRequest.setAttribute("serverBase", serverBase);
+        aRequest.setAttribute("showSimilarDocuments", backend.isShowSimilarDocuments());
 
-        aRequest.getRequestDispatcher("/index.ftl").forward(aRequest, aResponse);
+        aRequest.getRequestDispatcher(theNextPage ? "/resultentries.ftl" : "/index.ftl").forward(aRequest, aResponse);
     }
 }
\ No newline at end of file
@@ -0,0 +1,101 @@
+/*
+ * FXDesktopSearch Copyright 2013 Mirko Sertic
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package de.mirkosertic.desktopsearch;
+
+import com.google.common.hash.HashFunction;
+import com.google.common.hash.Hashing;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+
+// 64 bit SimHash signatures of word shingles. Near-duplicate texts differ in only a few bits, and two
+// signatures within MAX_DISTANCE share at least one of the BANDS, which are indexed to find candidates
+final class SimHash {
+
+    static final int SHINGLE_SIZE = 3;
+    static final int MIN_WORDS = 10;
+    static final int BANDS = 4;
+    static final int MAX_DISTANCE = 3;
+
+    private static final HashFunction HASH_FUNCTION = Hashing.murmur3_128();
+
+    private SimHash() {
+    }
+
+    private static List<String> wordsOf(final String aText) {
+        final List<String> theResult = new ArrayList<>();
+        final var theWord = new StringBuilder();
+        for (var i = 0; i <= aText.length(); i++) {
+            if (i < aText.length() && Character.isLetterOrDigit(aText.charAt(i))) {
+                theWord.append(aText.charAt(i));
+            } else if (theWord.length() > 0) {
+                theResult.add(theWord.toString().toLowerCase(Locale.ROOT));
+                theWord.setLength(0);
+            }
+        }
+        return theResult;
+    }
+
+    // Returns null for texts too short to tell near-duplicates apart
+    public static Long of(final String aText) {
+        final var theWords = wordsOf(aText);
+        if (theWords.size() < MIN_WORDS) {
+            return null;
+        }
+
+        final Map<String, Integer> theShingles = new HashMap<>();
+        for (var i = 0; i + SHINGLE_SIZE <= theWords.size(); i++) {
+            theShingles.merge(String.join(" ", theWords.subList(i, i + SHINGLE_SIZE)), 1, Integer::sum);
+        }
+
+        final var theWeights = new long[Long.SIZE];
+        for (final var theEntry : theShingles.entrySet()) {
+            final var theHash = HASH_FUNCTION.hashUnencodedChars(theEntry.getKey()).asLong();
+            for (var i = 0; i < Long.SIZE; i++) {
+                if ((theHash >>> i & 1) == 1) {
+                    theWeights[i] += theEntry.getValue();
+                } else {
+                    theWeights[i] -= theEntry.getValue();
+                }
+            }
+        }
+
+        var theResult = 0L;
+        for (var i = 0; i < Long.SIZE; i++) {
+            if (theWeights[i] > 0) {
+                theResult |= 1L << i;
+            }
+        }
+        return theResult;
+    }
+
+    public static int distance(final long aHash1, final long aHash2) {
+        return Long.bitCount(aHash1 ^ aHash2);
+    }
+
+    public static List<String> bandsOf(final long aHash) {
+        final List<String> theResult = new ArrayList<>();
+        final var theBandSize = Long.SIZE / BANDS;
+        for (var i = 0; i < BANDS; i++) {
+            final var theBand = aHash >>> (i * theBandSize) & ((1L << theBandSize) - 1);
+            theResult.add(i + ":" + Long.toHexString(theBand));
+        }
+        return theResult;
+    }
+}
@@ -0,0 +1,149 @@
+/*
+ * FXDesktopSearch Copyright 2013 Mirko Sertic
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package de.mirkosertic.desktopsearch;
+
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import org.apache.solr.client.solrj.SolrClient;
+import org.apache.solr.client.solrj.SolrQuery;
+import org.apache.solr.client.solrj.util.ClientUtils;
+import org.apache.solr.common.util.NamedList;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicLong;
+
+// Documents similar to a search result, only looked up when the user asks for them. The interesting
+// terms of a document are computed once per index version
+class SimilarDocuments {
+
+    static final int MAX_CACHED_DOCUMENTS = 1000;
+    static final int NUMBER_OF_SIMILAR_DOCUMENTS = 5;
+
+    private static class Terms {
+
+        private final long searcherVersion;
+        private final Map<String, Float> boosts;
+
+        private Terms(final long aSearcherVersion, final Map<String, Float> aBoosts) {
+            searcherVersion = aSearcherVersion;
+            boosts = aBoosts;
+        }
+    }
+
+    private final SolrClient solrClient;
+    private volatile Configuration configuration;
+    private final Cache<String, Terms> interestingTerms;
+    private final AtomicLong searcherVersion;
+
+    public SimilarDocuments(final SolrClient aSolrClient, final Configuration aConfiguration) {
+        solrClient = aSolrClient;
+        configuration = aConfiguration;
+        interestingTerms = CacheBuilder.newBuilder().maximumSize(MAX_CACHED_DOCUMENTS).build();
+        searcherVersion = new AtomicLong(-1);
+    }
+
+    public void configurationUpdated(final Configuration aConfiguration) {
+        configuration = aConfiguration;
+    }
+
+    public void searcherOpened(final long aSearcherVersion) {
+        if (searcherVersion.getAndAccumulate(aSearcherVersion, Math::max) < aSearcherVersion) {
+            interestingTerms.invalidateAll();
+        }
+    }
+
+    private Map<String, Float> interestingTermsOf(final String aUniqueID) throws IOException {
+        final var theCached = interestingTerms.getIfPresent(aUniqueID);
+        if (theCached != null && theCached.searcherVersion >= searcherVersion.get()) {
+            return theCached.boosts;
+        }
+
+        final var theVersion = searcherVersion.get();
+        final var theQuery = new SolrQuery(IndexFields.UNIQUEID + ":" + ClientUtils.escapeQueryChars(aUniqueID));
+        theQuery.setRequestHandler("/mlt");
+        try {
+            final var theResponse = solrClient.query(theQuery);
+            final Map<String, Float> theBoosts = new LinkedHashMap<>();
+            final var theTerms = (NamedList) theResponse.getResponse().get("interestingTerms");
+            if (theTerms != null) {
+                for (var i = 0; i < theTerms.size(); i++) {
+                    theBoosts.put(theTerms.getName(i), ((Number) theTerms.getVal(i)).floatValue());
+                }
+            }
+            interestingTerms.put(aUniqueID, new Terms(theVersion, theBoosts));
+            return theBoosts;
+        } catch (final Exception e) {
+            throw new IOException(e);
+        }
+    }
+
+    // Returns the file ids of the most similar documents, the document itself excluded. Near-duplicates
+    // come first, as they are found by their cluster without any term statistics
+    public List<String> similarTo(final String aUniqueID) throws IOException {
+        final Set<String> theResult = new LinkedHashSet<>(
+                fileIdsOf("{!join from=" + IndexFields.CLUSTER + " to=" + IndexFields.CLUSTER + "}"
+                        + IndexFields.UNIQUEID + ":" + ClientUtils.escapeQueryChars(aUniqueID), aUniqueID));
+        if (theResult.size() >= NUMBER_OF_SIMILAR_DOCUMENTS) {
+            return new ArrayList<>(theResult);
+        }
+
+        final var theTerms = interestingTermsOf(aUniqueID);
+        if (!theTerms.isEmpty()) {
+            final var theQueryString = new StringBuilder();
+            for (final var theEntry : theTerms.entrySet()) {
+                final var theField = theEntry.getKey().substring(0, theEntry.getKey().indexOf(':'));
+                final var theTerm = theEntry.getKey().substring(theField.length() + 1);
+                if (theQueryString.length() > 0) {
+                    theQueryString.append(' ');
+                }
+                theQueryString.append(theField).append(':').append(ClientUtils.escapeQueryChars(theTerm)).append('^').append(theEntry.getValue());
+            }
+            for (final var theFileId : fileIdsOf(theQueryString.toString(), aUniqueID)) {
+                if (theResult.size() < NUMBER_OF_SIMILAR_DOCUMENTS) {
+                    theResult.add(theFileId);
+                }
+            }
+        }
+        return new ArrayList<>(theResult);
+    }
+
+    private List<String> fileIdsOf(final String aQueryString, final String aExcludedID) throws IOException {
+        final var theEscapedID = ClientUtils.escapeQueryChars(aExcludedID);
+        final var theQuery = new SolrQuery(aQueryString);
+        theQuery.setRows(NUMBER_OF_SIMILAR_DOCUMENTS);
+        theQuery.setFields(IndexFields.UNIQUEID, IndexFields.FILEID);
+        theQuery.addFilterQuery("-" + IndexFields.UNIQUEID + ":" + theEscapedID, "-" + IndexFields.FILEID + ":" + theEscapedID);
+        if (configuration.isPassageIndexing()) {
+            theQuery.addFilterQuery("{!collapse field=" + IndexFields.FILEID + " nullPolicy=expand}");
+        }
+        try {
+            final List<String> theResult = new ArrayList<>();
+            for (final var theDocument : solrClient.query(theQuery).getResults()) {
+                final var theFileId = (String) theDocument.getFieldValue(IndexFields.FILEID);
+                theResult.add(theFileId != null ? theFileId : (String) theDocument.getFieldValue(IndexFields.UNIQUEID));
+            }
+            return theResult;
+        } catch (final Exception e) {
+            throw new IOException(e);
+        }
+    }
+}
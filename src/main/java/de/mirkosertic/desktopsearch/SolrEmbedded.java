@@ -15,17 +15,41 @@
  */
 package de.mirkosertic.desktopsearch;
 
+import lombok.extern.slf4j.Slf4j;
+import org.apache.commons.codec.digest.DigestUtils;
+import org.apache.commons.io.FileUtils;
 import org.apache.commons.io.IOUtils;
+import org.apache.lucene.index.ConcurrentMergeScheduler;
+import org.apache.lucene.index.LiveIndexWriterConfig;
 import org.apache.solr.client.solrj.SolrClient;
 import org.apache.solr.client.solrj.embedded.EmbeddedSolrServer;
+import org.apache.solr.core.AbstractSolrEventListener;
 import org.apache.solr.core.CoreContainer;
+import org.apache.solr.core.SolrCore;
+import org.apache.solr.request.LocalSolrQueryRequest;
+import org.apache.solr.request.SolrRequestInfo;
+import org.apache.solr.response.SolrQueryResponse;
+import org.apache.solr.search.SolrIndexSearcher;
 
 import java.io.File;
-import java.io.FileOutputStream;
 import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.function.Consumer;
+import java.util.function.Supplier;
 
+@Slf4j
 public class SolrEmbedded {
 
+    // Raised whenever the schema changes in a way existing index data cannot be read with,
+    // for instance when field types or docValues change. The index is then rebuilt by the crawler
+    static final String INDEX_LAYOUT_VERSION = "2";
+
+    // Single file changes open a new searcher every second, they are not all warmed up
+    static final long MIN_WARMUP_INTERVAL = 10000;
+
     public static class Config {
 
         private final File solrHome;
@@ -37,6 +61,9 @@ public class SolrEmbedded {
 
     private final CoreContainer coreContainer;
     private final EmbeddedSolrServer embeddedSolrServer;
+    private final List<Consumer<SolrIndexSearcher>> searcherListeners;
+    private volatile Supplier<List<Map<String, Object>>> warmupQueries;
+    private volatile long lastWarmup;
 
     public SolrEmbedded(final Config config) throws IOException {
         // Copy all required files
@@ -50,8 +77,19 @@ public class SolrEmbedded {
         final var core1data = new File(core1, "data");
         final var core1lang = new File(core1, "lang");
 
+        final var theLayoutVersion = new File(core1, "index.version");
+        final var theLayoutChanged = !theLayoutVersion.exists()
+                || !INDEX_LAYOUT_VERSION.equals(FileUtils.readFileToString(theLayoutVersion, StandardCharsets.UTF_8).trim());
+        if (theLayoutChanged && core1data.exists()) {
+            log.warn("Index layout has changed, removing {}. A complete crawl rebuilds the index", core1data);
+            FileUtils.deleteDirectory(core1data);
+        }
+
         core1conf.mkdirs();
         core1data.mkdirs();
+        if (theLayoutChanged) {
+            FileUtils.writeStringToFile(theLayoutVersion, INDEX_LAYOUT_VERSION, StandardCharsets.UTF_8);
+        }
         core1lang.mkdirs();
 
         // Core1
@@ -61,7 +99,6 @@ public class SolrEmbedded {
         copyResourceToFile("/solrhome/core1/solrconfig.xml", new File(core1, "solrconfig.xml"));
         copyResourceToFile("/solrhome/core1/stopwords.txt", new File(core1, "stopwords.txt"));
         copyResourceToFile("/solrhome/core1/synonyms.txt", new File(core1, "synonyms.txt"));
-        copyResourceToFile("/solrhome/core1/update-script.js", new File(core1, "update-script.js"));
 
         // Core1 Config
         copyResourceToFile("/solrhome/core1/conf/elevate.xml", new File(core1conf, "elevate.xml"));
@@ -75,6 +112,136 @@ public class SolrEmbedded {
         coreContainer.load();
 
         embeddedSolrServer = new EmbeddedSolrServer(coreContainer, "core1");
+
+        searcherListeners = new CopyOnWriteArrayList<>();
+        try (final var theCore = coreContainer.getCore("core1")) {
+            theCore.registerNewSearcherListener(new AbstractSolrEventListener(theCore) {
+                @Override
+                public void newSearcher(final SolrIndexSearcher aNewSearcher, final SolrIndexSearcher aCurrentSearcher) {
+                    searcherListeners.forEach(l -> l.accept(aNewSearcher));
+                    if (System.currentTimeMillis() - lastWarmup >= MIN_WARMUP_INTERVAL) {
+                        warmUp(getCore(), aNewSearcher);
+                    }
+                }
+            });
+        }
+    }
+
+    // Listeners are called while the new searcher is warmed up, so they must not block.
+    // A new listener is called for the current searcher right away
+    public void addSearcherListener(final Consumer<SolrIndexSearcher> aListener) {
+        searcherListeners.add(aListener);
+        try (final var theCore = coreContainer.getCore("core1")) {
+            final var theSearcher = theCore.getSearcher();
+            try {
+                aListener.accept(theSearcher.get());
+            } finally {
+                theSearcher.decref();
+            }
+        }
+    }
+
+    // The queries run against a new searcher before it replaces the current one. The current searcher
+    // is warmed up in the background right away
+    public void setWarmupQueries(final Supplier<List<Map<String, Object>>> aQueries) {
+        warmupQueries = aQueries;
+        final var theWarmer = new Thread(() -> {
+            try (final var theCore = coreContainer.getCore("core1")) {
+                if (theCore == null) {
+                    return;
+                }
+                final var theSearcher = theCore.getSearcher();
+                try {
+                    warmUp(theCore, theSearcher.get());
+                } finally {
+                    theSearcher.decref();
+                }
+            }
+        }, "Searcher warm-up");
+        theWarmer.setDaemon(true);
+        theWarmer.setPriority(Thread.MIN_PRIORITY);
+        theWarmer.start();
+    }
+
+    private void warmUp(final SolrCore aCore, final SolrIndexSearcher aSearcher) {
+        final var theSupplier = warmupQueries;
+        if (theSupplier == null) {
+            return;
+        }
+        lastWarmup = System.currentTimeMillis();
+        final var theQueries = theSupplier.get();
+
+        // New searchers are warmed up on Solr's searcher thread, searches are more important
+        final var theThread = Thread.currentThread();
+        final var thePriority = theThread.getPriority();
+        theThread.setPriority(Thread.MIN_PRIORITY);
+        try {
+            for (final var theParams : theQueries) {
+                final var theRequest = new LocalSolrQueryRequest(aCore, new SearchMapParams(theParams)) {
+                    @Override
+                    public SolrIndexSearcher getSearcher() {
+                        return aSearcher;
+                    }
+
+                    @Override
+                    public void close() {
+                    }
+                };
+                final var theResponse = new SolrQueryResponse();
+                SolrRequestInfo.setRequestInfo(new SolrRequestInfo(theRequest, theResponse));
+                try {
+                    aCore.execute(aCore.getRequestHandler("/select"), theRequest, theResponse);
+                } finally {
+                    SolrRequestInfo.clearRequestInfo();
+                }
+            }
+            log.info("Warmed up searcher with {} queries in {}ms", theQueries.size(), System.currentTimeMillis() - lastWarmup);
+        } catch (final Exception e) {
+            log.warn("Error warming up searcher", e);
+        } finally {
+            theThread.setPriority(thePriority);
+        }
+    }
+
+    public interface SearcherCallback {
+
+        void accept(SolrIndexSearcher aSearcher) throws IOException;
+    }
+
+    public void withSearcher(final SearcherCallback aCallback) throws IOException {
+        try (final var theCore = coreContainer.getCore("core1")) {
+            final var theSearcher = theCore.getSearcher();
+            try {
+                aCallback.accept(theSearcher.get());
+            } finally {
+                theSearcher.decref();
+            }
+        }
+    }
+
+    private void updateIndexWriterConfig(final Consumer<LiveIndexWriterConfig> aUpdate) throws IOException {
+        try (final var theCore = coreContainer.getCore("core1")) {
+            final var theWriter = theCore.getSolrCoreState().getIndexWriter(theCore);
+            try {
+                aUpdate.accept(theWriter.get().getConfig());
+            } finally {
+                theWriter.decref();
+            }
+        }
+    }
+
+    // Lucene flushes a new segment whenever the buffered documents exceed this size
+    public void setRamBufferSize(final double aSizeMB) throws IOException {
+        updateIndexWriterConfig(c -> c.setRAMBufferSizeMB(aSizeMB));
+    }
+
+    // Forced merges are not throttled by default, they would otherwise saturate the disk
+    public void setForceMergeRate(final double aMBPerSec) throws IOException {
+        updateIndexWriterConfig(c -> {
+            if (c.getMergeScheduler() instanceof ConcurrentMergeScheduler) {
+                ((ConcurrentMergeScheduler) c.getMergeScheduler()).setForceMergeMBPerSec(aMBPerSec);
+            }
+        });
     }
 
     public SolrClient solrClient() {
@@ -86,9 +253,16 @@ public class SolrEmbedded {
         embeddedSolrServer.close();
     }
 
+    // Files are only rewritten if their content changed, most boots do not write anything
     private static void copyResourceToFile(final String aResource, final File aTargetFile) throws IOException {
-        try (final var theFos = new FileOutputStream(aTargetFile)) {
-            IOUtils.copy(SolrEmbedded.class.getResourceAsStream(aResource), theFos);
+        final byte[] theContent;
+        try (final var theResource = SolrEmbedded.class.getResourceAsStream(aResource)) {
+            theContent = IOUtils.toByteArray(theResource);
+        }
+        if (aTargetFile.exists() && aTargetFile.length() == theContent.length
+                && DigestUtils.md5Hex(theContent).equals(DigestUtils.md5Hex(FileUtils.readFileToByteArray(aTargetFile)))) {
+            return;
         }
+        FileUtils.writeByteArrayToFile(aTargetFile, theContent);
     }
 }
\ No newline at end of file
@@ -0,0 +1,174 @@
+/*
+ * FXDesktopSearch Copyright 2013 Mirko Sertic
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package de.mirkosertic.desktopsearch;
+
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import org.apache.commons.lang3.StringUtils;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+// Caches typeahead results per searcher version, narrows the results of a shorter prefix where possible,
+// and lets every client have at most one lookup running. Lookups superseded while waiting are dropped.
+class SuggestionService {
+
+    static final int MAX_CACHED_PREFIXES = 1000;
+    static final int MIN_NARROWING_TOKEN_LENGTH = 3;
+
+    private static final String TOKEN_SEPARATORS = " ,:;?!.";
+
+    public interface Lookup {
+
+        Result lookup(String aTerm) throws IOException;
+    }
+
+    public static class Result {
+
+        private final long searcherVersion;
+        private final Suggestion[] suggestions;
+        // True if the lookup found everything matching the term, only those results can be narrowed
+        private final boolean complete;
+
+        public Result(final long aSearcherVersion, final Suggestion[] aSuggestions, final boolean aComplete) {
+            searcherVersion = aSearcherVersion;
+            suggestions = aSuggestions;
+            complete = aComplete;
+        }
+    }
+
+    private static class Client {
+
+        private final AtomicLong latestRequest = new AtomicLong();
+    }
+
+    private final Lookup lookup;
+    private final Cache<String, Result> results;
+    private final Cache<String, Client> clients;
+    private final AtomicLong searcherVersion;
+
+    public SuggestionService(final Lookup aLookup) {
+        lookup = aLookup;
+        results = CacheBuilder.newBuilder().maximumSize(MAX_CACHED_PREFIXES).build();
+        clients = CacheBuilder.newBuilder().expireAfterAccess(10, TimeUnit.MINUTES).build();
+        searcherVersion = new AtomicLong(-1);
+    }
+
+    // Cached suggestions were looked up with the previous settings
+    public void configurationUpdated() {
+        results.invalidateAll();
+    }
+
+    public void searcherOpened(final long aSearcherVersion) {
+        if (searcherVersion.getAndAccumulate(aSearcherVersion, Math::max) < aSearcherVersion) {
+            results.invalidateAll();
+        }
+    }
+
+    // Returns null if a newer request of the same client arrived while this one was waiting
+    public Suggestion[] suggest(final String aClientId, final String aTerm) throws IOException {
+        final var theKey = aTerm.toLowerCase(Locale.ROOT);
+        var theCached = cached(theKey);
+        if (theCached != null) {
+            return theCached;
+        }
+
+        final Client theClient;
+        try {
+            theClient = clients.get(aClientId, Client::new);
+        } catch (final ExecutionException e) {
+            throw new IllegalStateException(e);
+        }
+        final var theRequest = theClient.latestRequest.incrementAndGet();
+        synchronized (theClient) {
+            if (theClient.latestRequest.get() != theRequest) {
+                return null;
+            }
+            theCached = cached(theKey);
+            if (theCached != null) {
+                return theCached;
+            }
+            final var theResult = lookup.lookup(aTerm);
+            searcherOpened(theResult.searcherVersion);
+            results.put(theKey, theResult);
+            return theResult.suggestions;
+        }
+    }
+
+    private boolean isValid(final Result aResult) {
+        return aResult != null && aResult.searcherVersion >= searcherVersion.get();
+    }
+
+    private Suggestion[] cached(final String aKey) {
+        final var theResult = results.getIfPresent(aKey);
+        if (isValid(theResult)) {
+            return theResult.suggestions;
+        }
+        if (StringUtils.containsAny(aKey, "*?~-")) {
+            return null;
+        }
+
+        // A complete result for a shorter prefix already contains everything the longer one can find
+        final var theTokens = StringUtils.split(aKey, TOKEN_SEPARATORS);
+        for (var i = aKey.length() - 1; i >= MIN_NARROWING_TOKEN_LENGTH; i--) {
+            final var thePrefix = aKey.substring(0, i);
+            final var thePrefixResult = results.getIfPresent(thePrefix);
+            if (isValid(thePrefixResult) && thePrefixResult.complete && lastTokenIsPrefix(thePrefix)) {
+                final var theNarrowed = new Result(thePrefixResult.searcherVersion, narrow(thePrefixResult.suggestions, theTokens), true);
+                results.put(aKey, theNarrowed);
+                return theNarrowed.suggestions;
+            }
+        }
+        return null;
+    }
+
+    // Short last tokens are looked up as exact terms, not as prefixes, so they cannot be narrowed
+    private static boolean lastTokenIsPrefix(final String aPrefix) {
+        final var theTokens = StringUtils.split(aPrefix, TOKEN_SEPARATORS);
+        return theTokens.length > 0 && theTokens[theTokens.length - 1].length() >= MIN_NARROWING_TOKEN_LENGTH
+                && TOKEN_SEPARATORS.indexOf(aPrefix.charAt(aPrefix.length() - 1)) < 0;
+    }
+
+    private static Suggestion[] narrow(final Suggestion[] aSuggestions, final String[] aTokens) {
+        final List<Suggestion> theResult = new ArrayList<>();
+        for (final var theSuggestion : aSuggestions) {
+            final var theWords = StringUtils.split(theSuggestion.getValue().toLowerCase(Locale.ROOT), TOKEN_SEPARATORS);
+            var theMatches = true;
+            for (final var theToken : aTokens) {
+                var theFound = false;
+                for (final var theWord : theWords) {
+                    if (theWord.startsWith(theToken)) {
+                        theFound = true;
+                        break;
+                    }
+                }
+                if (!theFound) {
+                    theMatches = false;
+                    break;
+                }
+            }
+            if (theMatches) {
+                theResult.add(theSuggestion);
+            }
+        }
+        return theResult.toArray(new Suggestion[0]);
+    }
+}
@@ -35,7 +35,16 @@ class SuggestionServlet extends HttpServlet {
     @Override
     protected void service(final HttpServletRequest aRequest, final HttpServletResponse aResponse) throws IOException {
         final var theTerm = aRequest.getParameter("term");
-        final var theTerms = backend.findSuggestionTermsFor(theTerm);
+        var theClientId = aRequest.getParameter("client");
+        if (theClientId == null) {
+            theClientId = aRequest.getRemoteAddr();
+        }
+        final var theTerms = backend.findSuggestionTermsFor(theClientId, theTerm);
+        if (theTerms == null) {
+            // Superseded by a newer request of the same client
+            aResponse.setStatus(HttpServletResponse.SC_NO_CONTENT);
+            return;
+        }
 
         aResponse.setHeader("Cache-Control", "no-cache, no-store, must-revalidate");
         aResponse.setHeader("Pragma", "no-cache");
@@ -108,6 +108,12 @@ public enum SupportedDocumentType {
         public String getDisplayName(final Locale aLocale) {
             return "Open Office Document (.odt)";
         }
+    },
+    zip {
+        @Override
+        public String getDisplayName(final Locale aLocale) {
+            return "ZIP Archive (.zip)";
+        }
     };
 
     public boolean supports(final String aFilename) {
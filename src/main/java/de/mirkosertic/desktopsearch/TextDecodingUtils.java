@@ -0,0 +1,134 @@
+/*
+ * FXDesktopSearch Copyright 2013 Mirko Sertic
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package de.mirkosertic.desktopsearch;
+
+import org.apache.tika.parser.txt.CharsetDetector;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.Charset;
+import java.nio.charset.CodingErrorAction;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+final class TextDecodingUtils {
+
+    private static final int PREFIX_SIZE = 8192;
+    // No charset needs more bytes than this for a single character
+    private static final long MAX_BYTES_PER_CHAR = 4;
+    private static final Charset DEFAULT_CHARSET = Charset.forName("windows-1252");
+
+    private TextDecodingUtils() {
+    }
+
+    // Files are read into the heap instead of being mapped, as a mapped file stays locked on Windows until
+    // the mapping is garbage collected. Only the bytes needed to decode the maximum number of characters are read
+    public static ByteBuffer read(final Path aFile, final long aSize, final long aMaxChars) throws IOException {
+        final var theLength = (int) Math.min(Integer.MAX_VALUE, Math.min(aSize, aMaxChars * MAX_BYTES_PER_CHAR));
+        final var theResult = ByteBuffer.allocate(theLength);
+        try (final var theChannel = FileChannel.open(aFile, StandardOpenOption.READ)) {
+            while (theResult.hasRemaining() && theChannel.read(theResult) >= 0) {
+                // Read until the buffer is full or the file ends
+            }
+        }
+        theResult.flip();
+        return theResult;
+    }
+
+    public static Charset detectCharset(final ByteBuffer aData, final Charset aDeclaredCharset) {
+        final var theData = aData.duplicate();
+
+        // Byte order marks always win
+        if (startsWith(theData, 0xEF, 0xBB, 0xBF)) {
+            aData.position(aData.position() + 3);
+            return StandardCharsets.UTF_8;
+        }
+        if (startsWith(theData, 0xFE, 0xFF)) {
+            aData.position(aData.position() + 2);
+            return StandardCharsets.UTF_16BE;
+        }
+        if (startsWith(theData, 0xFF, 0xFE)) {
+            aData.position(aData.position() + 2);
+            return StandardCharsets.UTF_16LE;
+        }
+
+        if (aDeclaredCharset != null) {
+            return aDeclaredCharset;
+        }
+
+        final var thePrefix = new byte[Math.min(PREFIX_SIZE, theData.remaining())];
+        theData.get(thePrefix);
+
+        if (isUTF8(thePrefix)) {
+            return StandardCharsets.UTF_8;
+        }
+
+        final var theMatch = new CharsetDetector().setText(thePrefix).detect();
+        if (theMatch != null) {
+            try {
+                return Charset.forName(theMatch.getName());
+            } catch (final Exception e) {
+                // Unknown to the JVM, we use the fallback
+            }
+        }
+        return DEFAULT_CHARSET;
+    }
+
+    public static CharBuffer decode(final ByteBuffer aData, final Charset aCharset, final int aMaxLength) {
+        final var theDecoder = aCharset.newDecoder()
+                .onMalformedInput(CodingErrorAction.REPLACE)
+                .onUnmappableCharacter(CodingErrorAction.REPLACE);
+        final var theMaxChars = (int) Math.min(aMaxLength, (long) Math.ceil(aData.remaining() * (double) theDecoder.maxCharsPerByte()));
+        final var theResult = CharBuffer.allocate(theMaxChars);
+        // An overflow just means we reached the maximum length, so we just stop here
+        theDecoder.decode(aData, theResult, true);
+        theDecoder.flush(theResult);
+        theResult.flip();
+        return theResult;
+    }
+
+    static Charset charsetForName(final String aName) {
+        try {
+            return Charset.forName(aName.trim());
+        } catch (final Exception e) {
+            return null;
+        }
+    }
+
+    private static boolean startsWith(final ByteBuffer aData, final int... aBytes) {
+        if (aData.remaining() < aBytes.length) {
+            return false;
+        }
+        for (var i = 0; i < aBytes.length; i++) {
+            if ((aData.get(aData.position() + i) & 0xFF) != aBytes[i]) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static boolean isUTF8(final byte[] aPrefix) {
+        // The prefix might end in the middle of a multi byte sequence, so this is not the end of input
+        final var theResult = StandardCharsets.UTF_8.newDecoder()
+                .onMalformedInput(CodingErrorAction.REPORT)
+                .onUnmappableCharacter(CodingErrorAction.REPORT)
+                .decode(ByteBuffer.wrap(aPrefix), CharBuffer.allocate(aPrefix.length), false);
+        return !theResult.isError();
+    }
+}
@@ -0,0 +1,47 @@
+/*
+ * FXDesktopSearch Copyright 2013 Mirko Sertic
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package de.mirkosertic.desktopsearch;
+
+import java.nio.file.Path;
+import java.util.EnumMap;
+import java.util.Map;
+
+class TextExtractorRegistry {
+
+    private final Map<SupportedDocumentType, TextExtractor> extractors;
+    private final TextExtractor fallback;
+
+    public TextExtractorRegistry(final TextExtractor aFallback) {
+        extractors = new EnumMap<>(SupportedDocumentType.class);
+        fallback = aFallback;
+    }
+
+    public TextExtractorRegistry register(final SupportedDocumentType aType, final TextExtractor aExtractor) {
+        extractors.put(aType, aExtractor);
+        return this;
+    }
+
+    public TextExtractor extractorFor(final Path aFile) {
+        final var theFileName = aFile.getFileName().toString();
+        for (final var theEntry : extractors.entrySet()) {
+            if (theEntry.getKey().supports(theFileName)) {
+                return theEntry.getValue();
+            }
+        }
+        // Everything else is handled by Tika
+        return fallback;
+    }
+}
@@ -0,0 +1,48 @@
+/*
+ * FXDesktopSearch Copyright 2013 Mirko Sertic
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package de.mirkosertic.desktopsearch;
+
+import java.io.BufferedInputStream;
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.nio.file.attribute.BasicFileAttributes;
+
+class TikaTextExtractor implements TextExtractor {
+
+    private final int maxLength;
+
+    public TikaTextExtractor(final int aMaxLength) {
+        maxLength = aMaxLength;
+    }
+
+    @Override
+    public String extractText(final Path aFile, final BasicFileAttributes aAttributes, final ExtractionContext aContext) throws IOException {
+        // Files under 4 Meg are read into memory as a whole
+        if (aAttributes.size() < 1024 * 1024 * 4) {
+            final var theData = Files.readAllBytes(aFile);
+            return aContext.parse(new ByteArrayInputStream(theData), maxLength);
+        }
+        try (final var theStream = Files.newInputStream(aFile, StandardOpenOption.READ)) {
+            return aContext.parse(new BufferedInputStream(theStream), maxLength)
+                    .replace('\n', ' ')
+                    .replace('\r', ' ')
+                    .replace('\t',' ');
+        }
+    }
+}
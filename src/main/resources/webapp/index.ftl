@@ -6,6 +6,9 @@
         <meta http-equiv="expires" content="0" />
         <meta http-equiv="expires" content="Tue, 01 Jan 1980 1:00:00 GMT" />
         <meta http-equiv="pragma" content="no-cache" />
+        <#if reloadUrl??>
+            <meta http-equiv="refresh" content="1; url=${reloadUrl}" />
+        </#if>
         <base href="${serverBase}"/>
         <meta http-equiv="Content-Type" content="text/html; charset=utf-8" />
         <link rel="stylesheet" href="style.css"/>
@@ -29,6 +32,11 @@
                         <div id="suggestion" class="hidden">
                         </div>
                     </div>
+                    <select id="sort" onchange="desktopsearch.sort(this)">
+                        <option value="relevance">Relevance</option>
+                        <option value="date">Newest first</option>
+                        <option value="size">Largest first</option>
+                    </select>
                     <button type="submit">Search!</button>
                 </nav>
             </#if>
@@ -60,29 +68,7 @@
             <#if queryResult?has_content>
                 <div class="summarytext">The search was processed in ${queryResult.elapsedTime}ms., searched in ${queryResult.totalDocuments} documents.</div>
 
-                <#list queryResult.documents as document>
-                    <div class="resultentry">
-                        <div class="image">
-                            <img class="lazy" src="loading.gif" data-src="/thumbnail/preview/${document.uniqueID}.png"/>
-                        </div>
-                        <div class="text">
-                            <a class="entrytitle" onclick="desktopsearch.openFile('${queryResult.getEscapedFileName(document.fileName)}')">${document.title}</a>
-                            <#list document.similarFiles as similarFile>
-                                <a class="filename" onclick="desktopsearch.openFile('${queryResult.getEscapedFileName(similarFile)}')">${queryResult.getSimpleFileName(similarFile)}</a>
-                            </#list>
-                            <div class="starsouter">
-                                <#list 1..5 as index>
-                                    <#if document.normalizedScore &gt;= index>
-                                        <span class="stars-full"></span>
-                                    <#else>
-                                        <span class="stars-empty"></span>
-                                    </#if>
-                                </#list>
-                            </div>
-                            <div class="entrytext">${document.highlightedSearchResult}</div>
-                        </div>
-                    </div>
-                </#list>
+                <#include "resultentries.ftl">
             <#else>
                 <div class="welcome">
                     <div class="logo">
@@ -90,12 +76,18 @@
                     </div>
                     <div class="search">
                         <div class="search-input-wrapper">
-                            <input autocomplete="off" id="querystring" name="querystring" placeholder="Enter searchphrase here...">
+                            <input value="${querystring?html}" autocomplete="off" id="querystring" name="querystring" placeholder="Enter searchphrase here...">
                             <div id="suggestion" class="hidden">
                             </div>
                         </div>
                         <button type="submit">Search!</button>
                     </div>
+                    <#if startupFailed??>
+                        <div class="startupfailed">The search index could not be loaded, please check the log file and restart the application.</div>
+                    </#if>
+                    <#if warmingUp??>
+                        <div class="warmingup">The search index is loading, searches start as soon as it is ready...</div>
+                    </#if>
                     <div class="introduction">
                         <div>Search examples:</div>
                         <div><mark>scott adams</mark> searches for all documents containing the phrase "scott adams" or at least the words "scott" and "adams" in any order.</div>
@@ -103,12 +95,16 @@
                         <div><mark>scott ad*</mark> searches for all documents containing the word "scott" and any words matching the wildcard "ad*", where * stands for any number of characters.</div>
                         <div><mark>scott ad?ms</mark> searches for all documents containing the word "scott" and any words matching the wildcard "ad?ms", where ? stands for one character.</div>
                         <div><mark>scott ~adams</mark> searches for all documents containing the word "scott" and any words matching the fuzzy term "adams".</div>
+                        <div><mark>scott adams modified:2019-03</mark> searches for all documents containing the words "scott" and "adams" last modified in March 2019. <mark>modified&gt;2019</mark>, <mark>modified&lt;2019-06-30</mark> and <mark>modified:2018..2019-06</mark> search after, before or within a period.</div>
+                        <div><mark>dogbert size&gt;10mb</mark> searches for all documents containing the word "dogbert" larger than 10 megabytes. Sizes are given in b, kb, mb or gb, <mark>size:1mb..10mb</mark> searches within a range.</div>
+                        <div><mark>dogbert sort:date</mark> shows the newest documents first, <mark>sort:size</mark> the largest ones.</div>
                     </div>
                 </div>
             </#if>
         </form>
         <script>
             desktopsearch.registerSuggest();
+            desktopsearch.registerSort();
         </script>
     </body>
 </html>
\ No newline at end of file
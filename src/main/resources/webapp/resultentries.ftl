@@ -0,0 +1,28 @@
+<#if queryResult?has_content>
+    <#list queryResult.documents as document>
+        <div class="resultentry<#if !document.verified> unverified</#if>">
+            <div class="image">
+                <img class="lazy" src="loading.gif" data-src="/thumbnail/preview/${document.uniqueID}.png"/>
+            </div>
+            <div class="text">
+                <a class="entrytitle" onclick="desktopsearch.openFile('${queryResult.getEscapedFileName(document.fileName)}')">${document.title}</a>
+                <#if showSimilarDocuments>
+                    <a class="similar" data-id="${document.uniqueID}" onclick="desktopsearch.similarFiles(this)">Similar documents</a>
+                </#if>
+                <div class="starsouter">
+                    <#list 1..5 as index>
+                        <#if document.normalizedScore &gt;= index>
+                            <span class="stars-full"></span>
+                        <#else>
+                            <span class="stars-empty"></span>
+                        </#if>
+                    </#list>
+                </div>
+                <div class="entrytext">${document.highlightedSearchResult}</div>
+            </div>
+        </div>
+    </#list>
+    <#if queryResult.nextPageLink??>
+        <div class="nextpage" data-href="${queryResult.nextPageLink}"></div>
+    </#if>
+</#if>
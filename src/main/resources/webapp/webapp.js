@@ -11,15 +11,65 @@ var desktopsearch = {
     openFile: function(f) {
         desktop.openFile(f);
     },
+    similarFiles: function(link) {
+        // Similar documents are only looked up on demand, as this is expensive
+        fetch('/similar?id=' + encodeURIComponent(link.dataset.id))
+            .then(function(response) {
+                return response.json();
+            })
+            .then(function(files) {
+                files.forEach(function(file) {
+                    var a = document.createElement('a');
+                    a.className = "filename";
+                    a.textContent = file.substring(Math.max(file.lastIndexOf('/'), file.lastIndexOf('\\')) + 1);
+                    a.onclick = function() {
+                        desktopsearch.openFile(file);
+                    };
+                    link.parentNode.insertBefore(a, link);
+                });
+                link.parentNode.removeChild(link);
+            });
+    },
+    registerSort: function() {
+        var select = document.getElementById("sort");
+        if (select) {
+            var sort = /(^|\s)sort:(\w+)/i.exec(document.getElementById("querystring").value);
+            select.value = sort ? sort[2].toLowerCase() : "relevance";
+        }
+    },
+    sort: function(select) {
+        // The sort order is part of the query, so it is kept by result links and follow-up pages
+        var input = document.getElementById("querystring");
+        var query = input.value.replace(/(^|\s)sort:\w+/gi, "").trim();
+        input.value = select.value === "relevance" ? query : query + " sort:" + select.value;
+        input.form.submit();
+    },
     registerSuggest: function() {
+        var client = Math.random().toString(36).substring(2);
+        var pending = null;
         document.getElementById("querystring").addEventListener("keyup", function(e) {
             var value = this.value;
             if (value.length > 2) {
-                fetch('/suggestion?term=' + encodeURI(value))
+                // Only the latest request matters, the server drops superseded ones of the same client
+                var options = {};
+                if (window.AbortController) {
+                    if (pending) {
+                        pending.abort();
+                    }
+                    pending = new AbortController();
+                    options.signal = pending.signal;
+                }
+                fetch('/suggestion?client=' + client + '&term=' + encodeURIComponent(value), options)
                     .then(function(response) {
+                        if (response.status === 204) {
+                            return null;
+                        }
                         return response.json();
                     })
                     .then(function(myJson) {
+                        if (myJson === null) {
+                            return;
+                        }
                         var datalist = document.getElementById("suggestion");
                         while (datalist.firstChild) {
                             datalist.removeChild(datalist.firstChild);
@@ -38,6 +88,11 @@ var desktopsearch = {
                         } else {
                             datalist.classList.add("hidden")
                         }
+                    })
+                    .catch(function(error) {
+                        if (error.name !== 'AbortError') {
+                            throw error;
+                        }
                     });
             }
         });
@@ -46,30 +101,42 @@ var desktopsearch = {
 
 
 document.addEventListener("DOMContentLoaded", function() {
-    var lazyImages = [].slice.call(document.querySelectorAll("img.lazy"));
     var active = false;
+    var loadingNextPage = false;
+
+    // Follow-up result pages are fetched once the end of the current page comes into view
+    var loadNextPage = function() {
+        var nextPage = document.querySelector("div.nextpage");
+        if (loadingNextPage || nextPage === null || nextPage.getBoundingClientRect().top > window.innerHeight * 2) {
+            return;
+        }
+        loadingNextPage = true;
+        fetch(nextPage.dataset.href)
+            .then(function(response) {
+                return response.text();
+            })
+            .then(function(html) {
+                nextPage.insertAdjacentHTML("beforebegin", html);
+                nextPage.parentNode.removeChild(nextPage);
+                loadingNextPage = false;
+                lazyLoad();
+            });
+    };
 
     var lazyLoad = function() {
         if (active === false) {
             active =true;
 
             setTimeout(function() {
+                // Images of follow-up pages are added later, so they are collected every time
+                var lazyImages = [].slice.call(document.querySelectorAll("img.lazy"));
                 lazyImages.forEach(function(lazyImage) {
                     if ((lazyImage.getBoundingClientRect().top <= window.innerHeight && lazyImage.getBoundingClientRect().bottom >= 0) && getComputedStyle(lazyImage).display !== "none") {
                         lazyImage.src = lazyImage.dataset.src;
                         lazyImage.classList.remove("lazy");
-
-                        lazyImages = lazyImages.filter(function(image) {
-                            return image !== lazyImage;
-                        });
-
-                        if (lazyImages.length === 0) {
-                            document.removeEventListener("scroll", lazyLoad);
-                            window.removeEventListener("resize", lazyLoad);
-                            window.removeEventListener("orientationchange", lazyLoad);
-                        }
                     }
                 });
+                loadNextPage();
 
                 active = false;
             }, 200);
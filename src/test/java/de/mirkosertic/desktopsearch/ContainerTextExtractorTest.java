@@ -0,0 +1,108 @@
+/*
+ * FXDesktopSearch Copyright 2013 Mirko Sertic
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package de.mirkosertic.desktopsearch;
+
+import org.apache.tika.metadata.Metadata;
+import org.apache.tika.parser.AutoDetectParser;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.xml.sax.helpers.DefaultHandler;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.Collections;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipOutputStream;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+public class ContainerTextExtractorTest {
+
+    @Rule
+    public TemporaryFolder temporaryFolder = new TemporaryFolder();
+
+    private static void writeZip(final OutputStream aStream, final String... aNamesAndContents) throws IOException {
+        try (final var theZip = new ZipOutputStream(aStream)) {
+            for (var i = 0; i < aNamesAndContents.length; i += 2) {
+                theZip.putNextEntry(new ZipEntry(aNamesAndContents[i]));
+                theZip.write(aNamesAndContents[i + 1].getBytes(StandardCharsets.UTF_8));
+                theZip.closeEntry();
+            }
+        }
+    }
+
+    @Test
+    public void testZipEntriesAreExtractedSeparately() throws IOException {
+        final var theInner = new ByteArrayOutputStream();
+        writeZip(theInner, "inner.txt", "nested content");
+
+        final var theFile = temporaryFolder.newFile("archive.zip").toPath();
+        try (final var theStream = Files.newOutputStream(theFile);
+             final var theZip = new ZipOutputStream(theStream)) {
+            theZip.putNextEntry(new ZipEntry("first.txt"));
+            theZip.write("hello first".getBytes(StandardCharsets.UTF_8));
+            theZip.closeEntry();
+            theZip.putNextEntry(new ZipEntry("nested.zip"));
+            theZip.write(theInner.toByteArray());
+            theZip.closeEntry();
+        }
+
+        final var theContext = new ExtractionContext(new MetadataNormalizer(Collections.emptyMap()));
+        theContext.newMetadata();
+        final var theText = new ContainerTextExtractor(1024).extractText(theFile,
+                Files.readAttributes(theFile, BasicFileAttributes.class), theContext);
+
+        // The container itself does not contain the text of its entries
+        assertTrue(!theText.contains("hello first"));
+
+        final var theEntries = theContext.getContainerEntries();
+        assertEquals(3, theEntries.size());
+        assertEquals("first.txt", theEntries.get(0).getName());
+        assertEquals("hello first", theEntries.get(0).getText().trim());
+        assertEquals("nested.zip", theEntries.get(1).getName());
+        assertEquals("nested.zip" + ContainerEntryExtractor.ENTRY_SEPARATOR + "inner.txt", theEntries.get(2).getName());
+        assertEquals("nested content", theEntries.get(2).getText().trim());
+
+        // Entries are only reported for container extraction
+        theContext.newMetadata();
+        assertNull(theContext.getContainerEntries());
+    }
+
+    @Test
+    public void testEntriesOfTheSameNameGetIdsOfTheirOwn() throws Exception {
+        final var theExtractor = new ContainerEntryExtractor(new AutoDetectParser());
+        theExtractor.reset(1024);
+        for (final var theContent : new String[] {"first image", "second image", "third image"}) {
+            final var theMetadata = new Metadata();
+            theMetadata.set(Metadata.RESOURCE_NAME_KEY, "image001.txt");
+            theExtractor.parseEmbedded(new ByteArrayInputStream(theContent.getBytes(StandardCharsets.UTF_8)), new DefaultHandler(), theMetadata, false);
+        }
+
+        final var theEntries = theExtractor.getEntries();
+        assertEquals("image001.txt", theEntries.get(0).getName());
+        assertEquals("image001 (2).txt", theEntries.get(1).getName());
+        assertEquals("image001 (3).txt", theEntries.get(2).getName());
+        assertEquals("third image", theEntries.get(2).getText().trim());
+    }
+}
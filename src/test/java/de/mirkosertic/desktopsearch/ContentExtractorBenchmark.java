@@ -0,0 +1,121 @@
+/*
+ * FXDesktopSearch Copyright 2013 Mirko Sertic
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package de.mirkosertic.desktopsearch;
+
+import org.apache.tika.Tika;
+import org.apache.tika.metadata.Metadata;
+import org.apache.tika.utils.DateUtils;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.profile.GCProfiler;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import java.io.ByteArrayInputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.Calendar;
+import java.util.Collections;
+import java.util.GregorianCalendar;
+import java.util.Locale;
+import java.util.concurrent.TimeUnit;
+import java.util.regex.Pattern;
+
+// Compares the allocation rate per document of the shared Tika facade with the reused extraction context.
+// Run the main method and compare the gc.alloc.rate.norm columns.
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class ContentExtractorBenchmark {
+
+    private static final int MAX_LENGTH = 1024 * 1024 * 5;
+
+    private byte[] document;
+    private Tika tika;
+    private Pattern metaDataDatePattern;
+    private ExtractionContext context;
+
+    @Setup
+    public void setup() {
+        final var theDocument = new StringBuilder("<html><head><title>Benchmark</title>");
+        theDocument.append("<meta name=\"dcterms:created\" content=\"2013-02-18T15:55:10Z\">");
+        theDocument.append("<meta name=\"dcterms:modified\" content=\"2019-10-01T08:00:00Z\">");
+        theDocument.append("<meta name=\"author\" content=\"Mirko Sertic\">");
+        theDocument.append("<meta name=\"keywords\" content=\"search, index, desktop\">");
+        theDocument.append("</head><body>");
+        for (var i = 0; i < 200; i++) {
+            theDocument.append("<p>The quick brown fox jumps over the lazy dog number ").append(i).append("</p>");
+        }
+        theDocument.append("</body></html>");
+        document = theDocument.toString().getBytes(StandardCharsets.UTF_8);
+
+        tika = new Tika();
+        tika.setMaxStringLength(MAX_LENGTH);
+        metaDataDatePattern = Pattern.compile("(\\d{4})-(\\d{2})-(\\d{2})T(\\d{2}):(\\d{2}):(\\d{2})Z");
+        context = new ExtractionContext(new MetadataNormalizer(Collections.emptyMap()));
+    }
+
+    @Benchmark
+    public Content tikaFacade() throws Exception {
+        final var theMetaData = new Metadata();
+        final var theText = tika.parseToString(new ByteArrayInputStream(document), theMetaData);
+        final var theContent = new Content("benchmark.html", theText, document.length, 0, SupportedLanguage.en);
+        for (final var theName : theMetaData.names()) {
+            final var theValue = theMetaData.get(theName);
+            final var theMatcher = metaDataDatePattern.matcher(theValue);
+            if (theMatcher.find()) {
+                final var theCalendar = GregorianCalendar.getInstance(DateUtils.UTC, Locale.US);
+                theCalendar.set(Calendar.YEAR, Integer.parseInt(theMatcher.group(1)));
+                theCalendar.set(Calendar.MONTH, Integer.parseInt(theMatcher.group(2)) - 1);
+                theCalendar.set(Calendar.DAY_OF_MONTH, Integer.parseInt(theMatcher.group(3)));
+                theCalendar.set(Calendar.HOUR_OF_DAY, Integer.parseInt(theMatcher.group(4)));
+                theCalendar.set(Calendar.MINUTE, Integer.parseInt(theMatcher.group(5)));
+                theCalendar.set(Calendar.SECOND, Integer.parseInt(theMatcher.group(6)));
+                theCalendar.set(Calendar.MILLISECOND, 0);
+                theContent.addMetaData(theName.toLowerCase(), theCalendar.getTime());
+            } else {
+                theContent.addMetaData(theName.toLowerCase(), theValue);
+            }
+        }
+        return theContent;
+    }
+
+    @Benchmark
+    public Content extractionContext() throws Exception {
+        final var theMetaData = context.newMetadata();
+        final var theText = context.parse(new ByteArrayInputStream(document), MAX_LENGTH);
+        final var theContent = new Content("benchmark.html", theText, document.length, 0, SupportedLanguage.en);
+        context.getMetadataNormalizer().addTo(theMetaData, theContent);
+        return theContent;
+    }
+
+    public static void main(final String[] args) throws Exception {
+        new Runner(new OptionsBuilder()
+                .include(ContentExtractorBenchmark.class.getSimpleName())
+                .addProfiler(GCProfiler.class)
+                .build()).run();
+    }
+}
@@ -0,0 +1,165 @@
+/*
+ * FXDesktopSearch Copyright 2013 Mirko Sertic
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package de.mirkosertic.desktopsearch;
+
+import org.apache.solr.client.solrj.SolrClient;
+import org.apache.solr.client.solrj.SolrQuery;
+import org.apache.solr.common.SolrInputDocument;
+import org.apache.solr.common.util.NamedList;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class DocValuesFacetComponentTest {
+
+    private static final int SEGMENTS = 3;
+    private static final int DOCUMENTS_PER_SEGMENT = 10;
+
+    @Rule
+    public TemporaryFolder temporaryFolder = new TemporaryFolder();
+
+    private SolrEmbedded solrEmbedded;
+    private SolrClient solrClient;
+
+    @Before
+    public void setUp() throws Exception {
+        solrEmbedded = new SolrEmbedded(new SolrEmbedded.Config(temporaryFolder.newFolder("solrhome")));
+        solrClient = solrEmbedded.solrClient();
+
+        // Every commit writes a segment of its own, so ordinals have to be mapped across segments
+        var theNumber = 0;
+        for (var theSegment = 0; theSegment < SEGMENTS; theSegment++) {
+            final List<SolrInputDocument> theDocuments = new ArrayList<>();
+            for (var i = 0; i < DOCUMENTS_PER_SEGMENT; i++, theNumber++) {
+                final var theDocument = new SolrInputDocument();
+                theDocument.setField(IndexFields.UNIQUEID, "doc" + theNumber);
+                theDocument.setField(IndexFields.LANGUAGE, "en");
+                theDocument.setField(IndexFields.CONTENT, "document " + theNumber);
+                theDocument.setField(IndexFields.FILESIZE, 10L);
+                theDocument.setField(IndexFields.LASTMODIFIED, new Date());
+                theDocument.setField(IndexFields.LOCATIONID, "location");
+                // "a" is found in 12 documents, "b", "c" and "d" in 6 each. Values a segment does not contain
+                // get different segment ordinals than in the other segments
+                theDocument.setField("attr_kind", List.of("a", "a", "b", "c", "d").get(theNumber % 5));
+                theDocument.addField("attr_tag", "tag" + (theNumber % 7 + theSegment));
+                theDocument.addField("attr_tag", "even" + (theNumber % 2));
+                theDocuments.add(theDocument);
+            }
+            solrClient.add(theDocuments);
+            solrClient.commit();
+        }
+        solrEmbedded.withSearcher(s -> assertTrue(s.getIndexReader().leaves().size() > 1));
+    }
+
+    @After
+    public void tearDown() throws Exception {
+        solrEmbedded.shutdown();
+    }
+
+    private SolrQuery query(final String aField, final int aLimit) {
+        final var theQuery = new SolrQuery("*:*");
+        theQuery.setRows(0);
+        theQuery.set(DocValuesFacetComponent.ENABLED_PARAM, true);
+        theQuery.set(DocValuesFacetComponent.FIELD_PARAM, aField);
+        theQuery.set(DocValuesFacetComponent.LIMIT_PARAM, aLimit);
+        return theQuery;
+    }
+
+    private static Map<String, Integer> facetsOf(final NamedList<?> aFacets) {
+        final Map<String, Integer> theResult = new LinkedHashMap<>();
+        for (var i = 0; i < aFacets.size(); i++) {
+            theResult.put(aFacets.getName(i), ((Number) aFacets.getVal(i)).intValue());
+        }
+        return theResult;
+    }
+
+    private Map<String, Integer> fxFacets(final SolrQuery aQuery, final String aField) throws Exception {
+        final var theFacets = (NamedList<?>) solrClient.query(aQuery).getResponse().get(DocValuesFacetComponent.FACETS_RESPONSE);
+        return facetsOf((NamedList<?>) theFacets.get(aField));
+    }
+
+    private Map<String, Integer> solrFacets(final String aField, final int aLimit) throws Exception {
+        final var theQuery = new SolrQuery("*:*");
+        theQuery.setRows(0);
+        theQuery.setFacet(true);
+        theQuery.addFacetField(aField);
+        theQuery.setFacetLimit(aLimit);
+        theQuery.setFacetMinCount(1);
+        final var theFacets = (NamedList<?>) solrClient.query(theQuery).getResponse().get("facet_counts");
+        return facetsOf((NamedList<?>) ((NamedList<?>) theFacets.get("facet_fields")).get(aField));
+    }
+
+    @Test
+    public void testCountsAreTheCountsOfSolrFacets() throws Exception {
+        for (final var theField : List.of("attr_kind", "attr_tag")) {
+            final var theExpected = solrFacets(theField, 100);
+            assertTrue(theExpected.size() > 2);
+            assertEquals(theExpected, fxFacets(query(theField, 100), theField));
+        }
+    }
+
+    @Test
+    public void testTopFacetsBreakTiesInIndexOrder() throws Exception {
+        final var theFacets = fxFacets(query("attr_kind", 2), "attr_kind");
+        assertEquals(List.of("a", "b"), new ArrayList<>(theFacets.keySet()));
+        assertEquals(Integer.valueOf(12), theFacets.get("a"));
+        assertEquals(Integer.valueOf(6), theFacets.get("b"));
+
+        // The same facets in the same order as Solr returns them
+        for (var theLimit = 1; theLimit <= 4; theLimit++) {
+            assertEquals(new ArrayList<>(solrFacets("attr_tag", theLimit).entrySet()),
+                    new ArrayList<>(fxFacets(query("attr_tag", theLimit), "attr_tag").entrySet()));
+        }
+    }
+
+    @Test
+    public void testSampledCountsAreScaledUp() throws Exception {
+        // 30 documents with a sample of 7 count every 5th document
+        final var theSampleSize = 7;
+        final var theTotal = SEGMENTS * DOCUMENTS_PER_SEGMENT;
+        final var theStep = (theTotal + theSampleSize - 1) / theSampleSize;
+
+        final var theDocuments = new SolrQuery("*:*");
+        theDocuments.setRows(theTotal);
+        theDocuments.setFields("attr_tag");
+        theDocuments.set("sort", "_docid_ asc");
+        final Map<String, Integer> theExpected = new LinkedHashMap<>();
+        final var theResults = solrClient.query(theDocuments).getResults();
+        assertEquals(theTotal, theResults.size());
+        for (var i = 0; i < theResults.size(); i += theStep) {
+            for (final var theValue : theResults.get(i).getFieldValues("attr_tag")) {
+                theExpected.merge(theValue.toString(), theStep, Integer::sum);
+            }
+        }
+
+        final var theQuery = query("attr_tag", 100);
+        theQuery.set(DocValuesFacetComponent.SAMPLE_PARAM, theSampleSize);
+        final var theSampled = fxFacets(theQuery, "attr_tag");
+        assertEquals(theExpected, theSampled);
+        assertEquals(Integer.valueOf(theTotal / 2), theSampled.get("even0"));
+    }
+}
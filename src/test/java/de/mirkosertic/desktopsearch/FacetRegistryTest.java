@@ -0,0 +1,72 @@
+/*
+ * FXDesktopSearch Copyright 2013 Mirko Sertic
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package de.mirkosertic.desktopsearch;
+
+import org.junit.Test;
+
+import java.io.File;
+import java.util.HashMap;
+import java.util.Map;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+
+public class FacetRegistryTest {
+
+    private static final String LAST_MODIFIED = FacetRegistry.DATE_PREFIX + "last-modified";
+
+    private static Configuration configuration() {
+        return new Configuration(new File("."))
+                .disableFacetDimension("attr_entity_LOCATION")
+                .disableFacetDimension("attr_entity_PERSON")
+                .disableFacetDimension("attr_entity_ORGANIZATION");
+    }
+
+    @Test
+    public void testConfiguredDimensions() {
+        final Map<String, Object> theParams = new HashMap<>();
+        new FacetRegistry(configuration()).addParams(theParams, null);
+
+        assertArrayEquals(new String[] {IndexFields.LANGUAGE, "attr_author", "attr_" + IndexFields.EXTENSION},
+                (String[]) theParams.get(DocValuesFacetComponent.FIELD_PARAM));
+        assertArrayEquals(new String[] {LAST_MODIFIED}, (String[]) theParams.get("facet.range"));
+        assertEquals("+1YEAR", theParams.get("f." + LAST_MODIFIED + ".facet.range.gap"));
+    }
+
+    @Test
+    public void testDrilldownSkipsDimensions() {
+        final Map<String, String> theDrilldown = new HashMap<>();
+        theDrilldown.put(IndexFields.LANGUAGE, "en");
+        theDrilldown.put(LAST_MODIFIED, "2019-03");
+
+        final Map<String, Object> theParams = new HashMap<>();
+        new FacetRegistry(configuration()).addParams(theParams, theDrilldown);
+
+        assertArrayEquals(new String[] {"attr_author", "attr_" + IndexFields.EXTENSION},
+                (String[]) theParams.get(DocValuesFacetComponent.FIELD_PARAM));
+        assertEquals("2019-03-01T00:00:00Z", theParams.get("f." + LAST_MODIFIED + ".facet.range.start"));
+        assertEquals("+1DAY", theParams.get("f." + LAST_MODIFIED + ".facet.range.gap"));
+
+        // Nothing below a day
+        theDrilldown.put(LAST_MODIFIED, "2019-03-15");
+        final Map<String, Object> theDayParams = new HashMap<>();
+        new FacetRegistry(configuration()).addParams(theDayParams, theDrilldown);
+        assertNull(theDayParams.get("facet.range"));
+        assertFalse(theDayParams.containsKey("facet"));
+    }
+}
@@ -0,0 +1,49 @@
+/*
+ * FXDesktopSearch Copyright 2013 Mirko Sertic
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package de.mirkosertic.desktopsearch;
+
+import org.apache.commons.codec.digest.DigestUtils;
+import org.apache.solr.common.SolrInputDocument;
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+
+public class FilesUpdateProcessorFactoryTest {
+
+    @Test
+    public void testFileDocument() {
+        final var theDocument = new SolrInputDocument();
+        theDocument.setField(IndexFields.UNIQUEID, "/docs/a.txt");
+        theDocument.setField(IndexFields.CONTENT, "some text");
+
+        FilesUpdateProcessorFactory.deriveFields(theDocument);
+
+        assertEquals("/docs/a.txt", theDocument.getFieldValue(IndexFields.FILEID));
+        assertEquals(DigestUtils.md5Hex("some text"), theDocument.getFieldValue(IndexFields.CONTENTMD5));
+    }
+
+    @Test
+    public void testPassageDocument() {
+        final var theDocument = new SolrInputDocument();
+        theDocument.setField(IndexFields.UNIQUEID, "/docs/a.txt" + PassageSplitter.PASSAGE_SEPARATOR + 3);
+        theDocument.setField(IndexFields.FILEID, "/docs/a.txt");
+        theDocument.setField(IndexFields.PASSAGE, "3");
+
+        FilesUpdateProcessorFactory.deriveFields(theDocument);
+
+        assertEquals("/docs/a.txt", theDocument.getFieldValue(IndexFields.FILEID));
+    }
+}
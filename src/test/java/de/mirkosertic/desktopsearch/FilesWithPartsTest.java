@@ -0,0 +1,59 @@
+/*
+ * FXDesktopSearch Copyright 2013 Mirko Sertic
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package de.mirkosertic.desktopsearch;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class FilesWithPartsTest {
+
+    @Test
+    public void testFilesFoundByTheUpdateCheckAreReplacedOnce() {
+        final var theFiles = new FilesWithParts();
+        theFiles.found("a.pdf");
+
+        assertTrue(theFiles.updated("a.pdf", false));
+        assertFalse(theFiles.updated("a.pdf", false));
+        assertFalse(theFiles.updated("b.pdf", false));
+    }
+
+    @Test
+    public void testAddedFilesAreRememberedUntilTheUpdateCheckSeesThem() {
+        final var theFiles = new FilesWithParts();
+        assertFalse(theFiles.updated("a.pdf", true));
+        assertTrue(theFiles.updated("a.pdf", true));
+
+        // The first searcher might have been opened before the commit contained the file
+        theFiles.searcherOpened();
+        assertTrue(theFiles.updated("a.pdf", false));
+        theFiles.searcherOpened();
+        assertFalse(theFiles.updated("a.pdf", false));
+    }
+
+    @Test
+    public void testRemovedFilesAreForgotten() {
+        final var theFiles = new FilesWithParts();
+        theFiles.found("a.pdf");
+        theFiles.updated("b.pdf", true);
+
+        theFiles.removed("a.pdf");
+        theFiles.removed("b.pdf");
+        assertFalse(theFiles.updated("a.pdf", false));
+        assertFalse(theFiles.updated("b.pdf", false));
+    }
+}
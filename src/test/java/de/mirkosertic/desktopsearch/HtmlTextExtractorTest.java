@@ -0,0 +1,58 @@
+/*
+ * FXDesktopSearch Copyright 2013 Mirko Sertic
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package de.mirkosertic.desktopsearch;
+
+import org.apache.tika.metadata.Metadata;
+import org.apache.tika.metadata.TikaCoreProperties;
+import org.junit.Test;
+
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.charset.StandardCharsets;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+
+public class HtmlTextExtractorTest {
+
+    @Test
+    public void testStripMarkup() {
+        final var theMetadata = new Metadata();
+        final var theText = HtmlTextExtractor.stripMarkup(CharBuffer.wrap(
+                "<html><head><title>The &amp; Title</title><style>body { color: red; }</style>"
+                        + "<script>if (a < b) { alert('</p>'); }</script></head>"
+                        + "<body><!-- a comment --><p class=\"a>b\">Hello&nbsp;<b>W&ouml;rld</b></p>\n\n<div>second</div></body></html>"),
+                theMetadata, Integer.MAX_VALUE);
+
+        assertEquals("Hello Wörld second", theText);
+        assertEquals("The & Title", theMetadata.get(TikaCoreProperties.TITLE));
+    }
+
+    @Test
+    public void testMaxLength() {
+        final var theText = HtmlTextExtractor.stripMarkup(CharBuffer.wrap("<p>abcdefghijk</p>"), new Metadata(), 5);
+        assertEquals("abcde", theText);
+    }
+
+    @Test
+    public void testDeclaredCharset() {
+        assertEquals(StandardCharsets.ISO_8859_1, HtmlTextExtractor.declaredCharset(ByteBuffer.wrap(
+                "<html><head><meta http-equiv=\"Content-Type\" content=\"text/html; charset=ISO-8859-1\">".getBytes(StandardCharsets.US_ASCII))));
+        assertEquals(StandardCharsets.UTF_8, HtmlTextExtractor.declaredCharset(ByteBuffer.wrap(
+                "<html><head><meta charset=\"utf-8\">".getBytes(StandardCharsets.US_ASCII))));
+        assertNull(HtmlTextExtractor.declaredCharset(ByteBuffer.wrap("<html>".getBytes(StandardCharsets.US_ASCII))));
+    }
+}
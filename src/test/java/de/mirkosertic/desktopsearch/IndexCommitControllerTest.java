@@ -0,0 +1,37 @@
+/*
+ * FXDesktopSearch Copyright 2013 Mirko Sertic
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package de.mirkosertic.desktopsearch;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+
+public class IndexCommitControllerTest {
+
+    @Test
+    public void testModeSwitches() {
+        assertEquals(IndexCommitController.Mode.INTERACTIVE, IndexCommitController.modeFor(IndexCommitController.Mode.INTERACTIVE, 0));
+        assertEquals(IndexCommitController.Mode.INTERACTIVE, IndexCommitController.modeFor(IndexCommitController.Mode.INTERACTIVE, 50));
+        assertEquals(IndexCommitController.Mode.BULK, IndexCommitController.modeFor(IndexCommitController.Mode.INTERACTIVE, 100));
+    }
+
+    @Test
+    public void testBulkModeUntilQueueIsAlmostDrained() {
+        assertEquals(IndexCommitController.Mode.BULK, IndexCommitController.modeFor(IndexCommitController.Mode.BULK, 50));
+        assertEquals(IndexCommitController.Mode.BULK, IndexCommitController.modeFor(IndexCommitController.Mode.BULK, 10));
+        assertEquals(IndexCommitController.Mode.INTERACTIVE, IndexCommitController.modeFor(IndexCommitController.Mode.BULK, 9));
+    }
+}
@@ -0,0 +1,47 @@
+/*
+ * FXDesktopSearch Copyright 2013 Mirko Sertic
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package de.mirkosertic.desktopsearch;
+
+import org.junit.Test;
+
+import java.util.Collections;
+
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class IndexMaintenanceSchedulerTest {
+
+    private static IndexStatistics.Snapshot snapshot(final int aSegments, final double aDeletedRatio) {
+        return new IndexStatistics.Snapshot(1, 100, Collections.emptyMap(), aSegments, aDeletedRatio);
+    }
+
+    @Test
+    public void testIdle() {
+        assertTrue(IndexMaintenanceScheduler.isIdle(IndexMaintenanceScheduler.IDLE_TIME, 0.2));
+        assertTrue(IndexMaintenanceScheduler.isIdle(IndexMaintenanceScheduler.IDLE_TIME, -1));
+        assertFalse(IndexMaintenanceScheduler.isIdle(IndexMaintenanceScheduler.IDLE_TIME - 1, 0.2));
+        assertFalse(IndexMaintenanceScheduler.isIdle(IndexMaintenanceScheduler.IDLE_TIME, 0.8));
+    }
+
+    @Test
+    public void testNeedsMerge() {
+        assertFalse(IndexMaintenanceScheduler.needsMerge(snapshot(3, 0.05)));
+        assertTrue(IndexMaintenanceScheduler.needsMerge(snapshot(3, 0.2)));
+        // Three tiers of segments are what the merge policy leaves on its own
+        assertFalse(IndexMaintenanceScheduler.needsMerge(snapshot(30, 0.05)));
+        assertTrue(IndexMaintenanceScheduler.needsMerge(snapshot(IndexMaintenanceScheduler.MAX_SEGMENTS + 1, 0)));
+    }
+}
@@ -0,0 +1,105 @@
+/*
+ * FXDesktopSearch Copyright 2013 Mirko Sertic
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package de.mirkosertic.desktopsearch;
+
+import org.apache.lucene.analysis.core.WhitespaceAnalyzer;
+import org.apache.lucene.document.Document;
+import org.apache.lucene.document.Field;
+import org.apache.lucene.document.LongPoint;
+import org.apache.lucene.document.StringField;
+import org.apache.lucene.index.DirectoryReader;
+import org.apache.lucene.index.IndexWriter;
+import org.apache.lucene.index.IndexWriterConfig;
+import org.apache.lucene.index.Term;
+import org.apache.lucene.store.ByteBuffersDirectory;
+import org.junit.Test;
+
+import java.io.IOException;
+
+import static org.junit.Assert.assertEquals;
+
+public class IndexStatisticsTest {
+
+    private static void addFile(final IndexWriter aWriter, final String aLocation, final int aPassages) throws IOException {
+        for (var i = 0; i < aPassages; i++) {
+            final var theDocument = new Document();
+            theDocument.add(new StringField(IndexFields.LOCATIONID, aLocation, Field.Store.NO));
+            theDocument.add(new LongPoint(IndexFields.PASSAGE, i));
+            aWriter.addDocument(theDocument);
+        }
+    }
+
+    @Test
+    public void testStatisticsPerSearcher() throws IOException {
+        final var theStatistics = new IndexStatistics();
+        assertEquals(0, theStatistics.current().getNumberOfDocuments());
+
+        try (final var theDirectory = new ByteBuffersDirectory();
+             final var theWriter = new IndexWriter(theDirectory, new IndexWriterConfig(new WhitespaceAnalyzer()))) {
+            addFile(theWriter, "home", 1);
+            addFile(theWriter, "home", 3);
+            theWriter.commit();
+            addFile(theWriter, "work", 2);
+            theWriter.commit();
+
+            try (final var theReader = DirectoryReader.open(theDirectory)) {
+                theStatistics.searcherOpened(theReader, LongPoint.newRangeQuery(IndexFields.PASSAGE, 1, Long.MAX_VALUE));
+                final var theSnapshot = theStatistics.current();
+                assertEquals(3, theSnapshot.getNumberOfDocuments());
+                assertEquals(2, theSnapshot.getNumberOfSegments());
+                assertEquals(2L, (long) theSnapshot.getDocumentsPerLocation().get("home"));
+                assertEquals(1L, (long) theSnapshot.getDocumentsPerLocation().get("work"));
+                assertEquals(theReader.getVersion(), theSnapshot.getSearcherVersion());
+            }
+        }
+    }
+
+    @Test
+    public void testDeletedDocumentsRatio() throws IOException {
+        final var theStatistics = new IndexStatistics();
+        try (final var theDirectory = new ByteBuffersDirectory();
+             final var theWriter = new IndexWriter(theDirectory, new IndexWriterConfig(new WhitespaceAnalyzer()))) {
+            addFile(theWriter, "home", 1);
+            addFile(theWriter, "work", 3);
+            theWriter.commit();
+            theWriter.deleteDocuments(new Term(IndexFields.LOCATIONID, "home"));
+            theWriter.commit();
+            try (final var theReader = DirectoryReader.open(theDirectory)) {
+                theStatistics.searcherOpened(theReader, LongPoint.newRangeQuery(IndexFields.PASSAGE, 1, Long.MAX_VALUE));
+                assertEquals(0.25, theStatistics.current().getDeletedDocumentsRatio(), 0.001);
+            }
+        }
+    }
+
+    @Test
+    public void testOlderSearcherIsIgnored() throws IOException {
+        final var theStatistics = new IndexStatistics();
+        try (final var theDirectory = new ByteBuffersDirectory();
+             final var theWriter = new IndexWriter(theDirectory, new IndexWriterConfig(new WhitespaceAnalyzer()))) {
+            addFile(theWriter, "home", 1);
+            theWriter.commit();
+            try (final var theOldReader = DirectoryReader.open(theDirectory)) {
+                addFile(theWriter, "home", 1);
+                theWriter.commit();
+                try (final var theNewReader = DirectoryReader.open(theDirectory)) {
+                    theStatistics.searcherOpened(theNewReader, LongPoint.newRangeQuery(IndexFields.PASSAGE, 1, Long.MAX_VALUE));
+                    theStatistics.searcherOpened(theOldReader, LongPoint.newRangeQuery(IndexFields.PASSAGE, 1, Long.MAX_VALUE));
+                    assertEquals(2, theStatistics.current().getNumberOfDocuments());
+                }
+            }
+        }
+    }
+}
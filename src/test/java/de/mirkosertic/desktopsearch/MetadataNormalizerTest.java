@@ -0,0 +1,43 @@
+/*
+ * FXDesktopSearch Copyright 2013 Mirko Sertic
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package de.mirkosertic.desktopsearch;
+
+import org.junit.Test;
+
+import java.time.Instant;
+import java.util.Collections;
+
+import static org.junit.Assert.assertEquals;
+
+public class MetadataNormalizerTest {
+
+    @Test
+    public void testParseDate() {
+        assertEquals(Instant.parse("2013-02-18T15:55:10Z").toEpochMilli(), MetadataNormalizer.parseDate("2013-02-18T15:55:10Z"));
+        assertEquals(Instant.parse("2000-02-29T00:00:00Z").toEpochMilli(), MetadataNormalizer.parseDate("created 2000-02-29T00:00:00Z by"));
+        assertEquals(Instant.parse("1969-12-31T23:59:59Z").toEpochMilli(), MetadataNormalizer.parseDate("1969-12-31T23:59:59Z"));
+        assertEquals(MetadataNormalizer.NO_DATE, MetadataNormalizer.parseDate("Mon Feb 18 15:55:10 CET 2013"));
+        assertEquals(MetadataNormalizer.NO_DATE, MetadataNormalizer.parseDate("2013-13-18T15:55:10Z"));
+        assertEquals(MetadataNormalizer.NO_DATE, MetadataNormalizer.parseDate(null));
+    }
+
+    @Test
+    public void testHarmonizeName() {
+        final var theNormalizer = new MetadataNormalizer(Collections.singletonMap("creator", "author"));
+        assertEquals("author", theNormalizer.harmonizeName("dc:Creator"));
+        assertEquals("title", theNormalizer.harmonizeName("Title"));
+    }
+}
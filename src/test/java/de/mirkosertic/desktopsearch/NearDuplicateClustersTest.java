@@ -0,0 +1,58 @@
+/*
+ * FXDesktopSearch Copyright 2013 Mirko Sertic
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package de.mirkosertic.desktopsearch;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotEquals;
+
+public class NearDuplicateClustersTest {
+
+    private static final NearDuplicateClusters.IndexLookup EMPTY_INDEX = (aBands, aConsumer) -> {
+    };
+
+    @Test
+    public void testNearDuplicatesNotSearchableYetShareACluster() throws Exception {
+        final var theClusters = new NearDuplicateClusters();
+        final var theFirst = 0x0123456789abcdefL;
+        final var theCluster = theClusters.clusterOf(theFirst, EMPTY_INDEX);
+        assertEquals(Long.toHexString(theFirst), theCluster);
+
+        // Two bits apart, and the index does not know the first one yet
+        assertEquals(theCluster, theClusters.clusterOf(theFirst ^ 0b101, EMPTY_INDEX));
+        // Far apart
+        assertNotEquals(theCluster, theClusters.clusterOf(~theFirst, EMPTY_INDEX));
+
+        // Still remembered while the next commit might not contain it yet
+        theClusters.searcherOpened();
+        assertEquals(theCluster, theClusters.clusterOf(theFirst ^ 0b1, EMPTY_INDEX));
+        theClusters.searcherOpened();
+        theClusters.searcherOpened();
+        assertEquals(Long.toHexString(theFirst ^ 0b11), theClusters.clusterOf(theFirst ^ 0b11, EMPTY_INDEX));
+    }
+
+    @Test
+    public void testTheClosestIndexedDocumentWins() throws Exception {
+        final var theClusters = new NearDuplicateClusters();
+        final var theHash = 0x0123456789abcdefL;
+        assertEquals("near", theClusters.clusterOf(theHash, (aBands, aConsumer) -> {
+            aConsumer.accept(theHash ^ 0b111, "far");
+            aConsumer.accept(theHash ^ 0b1, "near");
+            aConsumer.accept(null, "unsigned");
+        }));
+    }
+}
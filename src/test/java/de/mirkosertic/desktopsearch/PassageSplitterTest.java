@@ -0,0 +1,60 @@
+/*
+ * FXDesktopSearch Copyright 2013 Mirko Sertic
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package de.mirkosertic.desktopsearch;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class PassageSplitterTest {
+
+    @Test
+    public void testSmallTextIsNotSplit() {
+        assertEquals(1, PassageSplitter.split("hello world").size());
+    }
+
+    @Test
+    public void testSplitAtWordBoundaries() {
+        final var theText = new StringBuilder();
+        for (var i = 0; i < 100; i++) {
+            theText.append("word").append(i).append(' ');
+        }
+        final var thePassages = PassageSplitter.split(theText.toString(), 100, 20);
+
+        assertTrue(thePassages.size() > 5);
+        for (final var thePassage : thePassages) {
+            assertTrue(thePassage.length() <= 100);
+            assertTrue(thePassage.startsWith("word"));
+            assertTrue(thePassage.endsWith(" "));
+        }
+        // Every word is contained in at least one passage, and borders overlap
+        for (var i = 0; i < 100; i++) {
+            final var theWord = "word" + i + " ";
+            assertTrue(thePassages.stream().anyMatch(p -> p.contains(theWord)));
+        }
+        final var theFirst = thePassages.get(0);
+        final var theLastWordOfFirst = theFirst.substring(theFirst.trim().lastIndexOf(' ') + 1);
+        assertTrue(thePassages.get(1).contains(theLastWordOfFirst));
+    }
+
+    @Test
+    public void testTextWithoutWhitespace() {
+        final var thePassages = PassageSplitter.split("a".repeat(250), 100, 20);
+        assertEquals("a".repeat(100), thePassages.get(0));
+        assertEquals(250, thePassages.stream().mapToInt(String::length).sum() - 20 * (thePassages.size() - 1));
+    }
+}
@@ -0,0 +1,175 @@
+/*
+ * FXDesktopSearch Copyright 2013 Mirko Sertic
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package de.mirkosertic.desktopsearch;
+
+import org.apache.lucene.analysis.standard.StandardAnalyzer;
+import org.apache.lucene.document.Document;
+import org.apache.lucene.document.Field;
+import org.apache.lucene.document.TextField;
+import org.apache.lucene.index.DirectoryReader;
+import org.apache.lucene.index.IndexWriter;
+import org.apache.lucene.index.IndexWriterConfig;
+import org.apache.lucene.index.Term;
+import org.apache.lucene.store.ByteBuffersDirectory;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.IOException;
+import java.util.List;
+import java.util.stream.Collectors;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class PhraseSuggestionIndexTest {
+
+    @Rule
+    public TemporaryFolder temporaryFolder = new TemporaryFolder();
+
+    private static void addDocument(final IndexWriter aWriter, final String aContent) throws IOException {
+        final var theDocument = new Document();
+        theDocument.add(new Field(IndexFields.CONTENT, aContent, TextField.TYPE_STORED));
+        aWriter.addDocument(theDocument);
+    }
+
+    private static List<String> values(final PhraseSuggestionIndex aIndex, final String aPhrase) throws IOException {
+        return aIndex.lookup(aPhrase, 10).getSuggestions().stream().map(Suggestion::getValue).collect(Collectors.toList());
+    }
+
+    @Test
+    public void testPhrasesAreSuggestedFromNewSegments() throws IOException {
+        final var theSuggestDirectory = temporaryFolder.newFolder("phrasesuggest").toPath();
+        try (final var theDirectory = new ByteBuffersDirectory();
+             final var theWriter = new IndexWriter(theDirectory, new IndexWriterConfig(new StandardAnalyzer()))) {
+
+            try (final var theIndex = new PhraseSuggestionIndex(theSuggestDirectory)) {
+                assertTrue(theIndex.lookup("quick", 5).getSuggestions().isEmpty());
+
+                addDocument(theWriter, "The quick brown fox jumps over the lazy dog");
+                addDocument(theWriter, "A quick brown fox is hard to catch");
+                theWriter.commit();
+                try (final var theReader = DirectoryReader.open(theDirectory)) {
+                    theIndex.update(theReader);
+                }
+
+                // Phrases found in both documents come first, followed by "The quick brown" and "A quick brown"
+                final var theCompletions = theIndex.lookup("quick bro", 5);
+                final var theSuggestions = theCompletions.getSuggestions();
+                assertEquals(4, theSuggestions.size());
+                assertTrue(theCompletions.isComplete());
+                assertFalse(theIndex.lookup("quick bro", 4).isComplete());
+                assertTrue(theSuggestions.get(0).getLabel().startsWith("<b>quick</b> <b>bro</b>wn"));
+                assertTrue(values(theIndex, "quick bro").contains("quick brown"));
+                assertTrue(values(theIndex, "quick bro").contains("quick brown fox"));
+                assertTrue(values(theIndex, "lazy").contains("the lazy dog"));
+
+                addDocument(theWriter, "Searching the desktop index");
+                theWriter.commit();
+                try (final var theReader = DirectoryReader.open(theDirectory)) {
+                    theIndex.update(theReader);
+                }
+                assertTrue(values(theIndex, "desk").contains("desktop index"));
+            }
+
+            // Already indexed segments are remembered, so a reopened index does not add them again
+            try (final var theIndex = new PhraseSuggestionIndex(theSuggestDirectory)) {
+                assertEquals(4, theIndex.lookup("quick bro", 5).getSuggestions().size());
+            }
+        }
+    }
+
+    @Test
+    public void testWeightsAreSummedOverSegments() throws IOException {
+        final var theSuggestDirectory = temporaryFolder.newFolder("phrasesuggest").toPath();
+        try (final var theDirectory = new ByteBuffersDirectory();
+             final var theWriter = new IndexWriter(theDirectory, new IndexWriterConfig(new StandardAnalyzer()));
+             final var theIndex = new PhraseSuggestionIndex(theSuggestDirectory)) {
+
+            addDocument(theWriter, "alpha beta");
+            addDocument(theWriter, "alpha beta");
+            theWriter.commit();
+            try (final var theReader = DirectoryReader.open(theDirectory)) {
+                theIndex.update(theReader);
+            }
+            addDocument(theWriter, "alpha beta");
+            addDocument(theWriter, "alpha gamma");
+            addDocument(theWriter, "alpha gamma");
+            theWriter.commit();
+            try (final var theReader = DirectoryReader.open(theDirectory)) {
+                theIndex.update(theReader);
+            }
+            // Three documents contain "alpha beta" in total, though the last segment only has one of them
+            assertEquals(List.of("alpha beta", "alpha gamma"), values(theIndex, "alpha"));
+
+            // The counts of merged segments replace the counts of the segments they were merged from
+            theWriter.forceMerge(1);
+            theWriter.commit();
+            try (final var theReader = DirectoryReader.open(theDirectory)) {
+                theIndex.update(theReader);
+            }
+            assertEquals(List.of("alpha beta", "alpha gamma"), values(theIndex, "alpha"));
+
+            // Phrases no longer found in any document are not suggested anymore
+            theWriter.deleteDocuments(new Term(IndexFields.CONTENT, "beta"));
+            theWriter.forceMerge(1);
+            theWriter.commit();
+            try (final var theReader = DirectoryReader.open(theDirectory)) {
+                theIndex.update(theReader);
+            }
+            assertEquals(List.of("alpha gamma"), values(theIndex, "alpha"));
+        }
+    }
+
+    @Test
+    public void testDeletedDocumentsAreSubtracted() throws IOException {
+        final var theSuggestDirectory = temporaryFolder.newFolder("phrasesuggest").toPath();
+        try (final var theDirectory = new ByteBuffersDirectory();
+             final var theWriter = new IndexWriter(theDirectory, new IndexWriterConfig(new StandardAnalyzer()))) {
+
+            try (final var theIndex = new PhraseSuggestionIndex(theSuggestDirectory)) {
+                addDocument(theWriter, "alpha beta");
+                addDocument(theWriter, "alpha gamma");
+                addDocument(theWriter, "alpha gamma");
+                theWriter.commit();
+                try (final var theReader = DirectoryReader.open(theDirectory)) {
+                    theIndex.update(theReader);
+                }
+                assertEquals(List.of("alpha gamma", "alpha beta"), values(theIndex, "alpha"));
+
+                // The segment is not merged, but its deleted documents no longer count
+                theWriter.deleteDocuments(new Term(IndexFields.CONTENT, "gamma"));
+                theWriter.commit();
+                try (final var theReader = DirectoryReader.open(theDirectory)) {
+                    assertEquals(2, theReader.numDeletedDocs());
+                    theIndex.update(theReader);
+                }
+                assertEquals(List.of("alpha beta"), values(theIndex, "alpha"));
+            }
+
+            // The committed counts know the deletions, so a reopened index does not subtract them again
+            try (final var theIndex = new PhraseSuggestionIndex(theSuggestDirectory)) {
+                addDocument(theWriter, "alpha gamma");
+                theWriter.commit();
+                try (final var theReader = DirectoryReader.open(theDirectory)) {
+                    theIndex.update(theReader);
+                }
+                assertEquals(List.of("alpha beta", "alpha gamma"), values(theIndex, "alpha"));
+            }
+        }
+    }
+}
@@ -0,0 +1,174 @@
+/*
+ * FXDesktopSearch Copyright 2013 Mirko Sertic
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package de.mirkosertic.desktopsearch;
+
+import org.apache.lucene.analysis.core.WhitespaceAnalyzer;
+import org.apache.lucene.document.Document;
+import org.apache.lucene.document.Field;
+import org.apache.lucene.document.TextField;
+import org.apache.lucene.index.DirectoryReader;
+import org.apache.lucene.index.IndexWriter;
+import org.apache.lucene.index.IndexWriterConfig;
+import org.apache.lucene.index.Term;
+import org.apache.lucene.search.BooleanClause;
+import org.apache.lucene.search.BooleanQuery;
+import org.apache.lucene.search.BoostQuery;
+import org.apache.lucene.search.IndexSearcher;
+import org.apache.lucene.search.Query;
+import org.apache.lucene.search.WildcardQuery;
+import org.apache.lucene.search.spans.SpanMultiTermQueryWrapper;
+import org.apache.lucene.search.spans.SpanNearQuery;
+import org.apache.lucene.search.spans.SpanQuery;
+import org.apache.lucene.search.spans.SpanTermQuery;
+import org.apache.lucene.store.ByteBuffersDirectory;
+import org.junit.AfterClass;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertTrue;
+
+public class ProximityQueryTest {
+
+    private static final String FIELD = "content";
+    private static final String[] WORDS = {"alpha", "beta", "gamma", "delta", "epsilon", "zeta", "eta", "theta"};
+
+    private static ByteBuffersDirectory directory;
+    private static DirectoryReader reader;
+
+    @BeforeClass
+    public static void createIndex() throws IOException {
+        directory = new ByteBuffersDirectory();
+        final var theRandom = new Random(42);
+        try (final var theWriter = new IndexWriter(directory, new IndexWriterConfig(new WhitespaceAnalyzer()))) {
+            for (var i = 0; i < 500; i++) {
+                final var theText = new StringBuilder();
+                final var theLength = 3 + theRandom.nextInt(40);
+                for (var j = 0; j < theLength; j++) {
+                    theText.append(WORDS[theRandom.nextInt(WORDS.length)]).append(' ');
+                }
+                final var theDocument = new Document();
+                theDocument.add(new Field(FIELD, theText.toString(), TextField.TYPE_NOT_STORED));
+                theWriter.addDocument(theDocument);
+                if (i % 100 == 99) {
+                    theWriter.commit();
+                }
+            }
+        }
+        reader = DirectoryReader.open(directory);
+    }
+
+    @AfterClass
+    public static void closeIndex() throws IOException {
+        reader.close();
+        directory.close();
+    }
+
+    private static SpanQuery span(final String aTerm) {
+        if (QueryUtils.isWildCard(aTerm)) {
+            return new SpanMultiTermQueryWrapper<>(new WildcardQuery(new Term(FIELD, aTerm)));
+        }
+        return new SpanTermQuery(new Term(FIELD, aTerm));
+    }
+
+    // The query as it was built before the proximity scoring was moved into a single query
+    private static Query legacyQuery(final List<SpanQuery> aSpans) {
+        final var theResult = new BooleanQuery.Builder();
+        final var theSpans = aSpans.toArray(new SpanQuery[0]);
+        theResult.add(new BoostQuery(new SpanNearQuery(theSpans, 0, true), 61), BooleanClause.Occur.SHOULD);
+        for (var theSlop = 0; theSlop < 10; theSlop++) {
+            theResult.add(new BoostQuery(new SpanNearQuery(theSpans, theSlop, false), 50 + 10 - theSlop), BooleanClause.Occur.SHOULD);
+        }
+        return theResult.build();
+    }
+
+    private static Map<Integer, Float> scores(final IndexSearcher aSearcher, final Query aQuery) throws IOException {
+        final Map<Integer, Float> theResult = new HashMap<>();
+        for (final var theDoc : aSearcher.search(aQuery, reader.maxDoc()).scoreDocs) {
+            theResult.put(theDoc.doc, theDoc.score);
+        }
+        return theResult;
+    }
+
+    private static void assertSameRanking(final String... aTerms) throws IOException {
+        final List<SpanQuery> theSpans = new ArrayList<>();
+        for (final var theTerm : aTerms) {
+            theSpans.add(span(theTerm));
+        }
+        final var theSearcher = new IndexSearcher(reader);
+
+        final var theExpected = scores(theSearcher, legacyQuery(theSpans));
+        final var theActual = scores(theSearcher, new ProximityQuery(FIELD, theSpans));
+
+        assertTrue(!theExpected.isEmpty());
+        assertEquals(theExpected.keySet(), theActual.keySet());
+        for (final var theEntry : theExpected.entrySet()) {
+            final var theScore = theActual.get(theEntry.getKey());
+            assertNotNull(theScore);
+            assertEquals("Score of doc " + theEntry.getKey(), theEntry.getValue(), theScore, theEntry.getValue() * 1e-5f);
+        }
+    }
+
+    @Test
+    public void testSameRankingAsSpanNearQueries() throws IOException {
+        assertSameRanking("alpha", "beta");
+        assertSameRanking("gamma", "alpha", "delta");
+        assertSameRanking("eta", "theta", "zeta", "alpha");
+    }
+
+    @Test
+    public void testSameRankingWithRepeatedTerms() throws IOException {
+        assertSameRanking("alpha", "alpha");
+        assertSameRanking("beta", "gamma", "beta");
+    }
+
+    @Test
+    public void testSameRankingWithWildcards() throws IOException {
+        assertSameRanking("alpha", "*eta");
+        assertSameRanking("ga*", "delta", "e*");
+    }
+
+    @Test
+    public void testBoostIsApplied() throws IOException {
+        final List<SpanQuery> theSpans = new ArrayList<>();
+        theSpans.add(span("alpha"));
+        theSpans.add(span("beta"));
+        final var theSearcher = new IndexSearcher(reader);
+
+        final var theExpected = scores(theSearcher, new BoostQuery(legacyQuery(theSpans), 3));
+        final var theActual = scores(theSearcher, new BoostQuery(new ProximityQuery(FIELD, theSpans), 3));
+        assertEquals(theExpected.keySet(), theActual.keySet());
+        for (final var theEntry : theExpected.entrySet()) {
+            assertEquals(theEntry.getValue(), theActual.get(theEntry.getKey()), theEntry.getValue() * 1e-5f);
+        }
+    }
+
+    @Test
+    public void testUnknownTermDoesNotMatch() throws IOException {
+        final List<SpanQuery> theSpans = new ArrayList<>();
+        theSpans.add(span("alpha"));
+        theSpans.add(span("omega"));
+        assertEquals(0, new IndexSearcher(reader).count(new ProximityQuery(FIELD, theSpans)));
+    }
+}
@@ -0,0 +1,81 @@
+/*
+ * FXDesktopSearch Copyright 2013 Mirko Sertic
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package de.mirkosertic.desktopsearch;
+
+import org.junit.Test;
+
+import java.io.File;
+import java.nio.file.Files;
+import java.util.Collections;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class QueryLogTest {
+
+    @Test
+    public void testMostUsedFirst() throws Exception {
+        final var theLog = new QueryLog(new File(Files.createTempDirectory("querylog").toFile(), "querylog.json"));
+        theLog.record("dogbert", null);
+        theLog.record("scott  adams", null);
+        theLog.record("scott adams", null);
+        theLog.record("scott adams", Collections.singletonMap(IndexFields.LANGUAGE, "en"));
+
+        final var theTop = theLog.top(2);
+        assertEquals(2, theTop.size());
+        assertEquals("scott adams", theTop.get(0).getQueryString());
+        assertEquals(2, theTop.get(0).getCount());
+        assertEquals(Collections.emptyMap(), theTop.get(0).getDrilldownFields());
+        assertEquals(3, theLog.top(10).size());
+    }
+
+    @Test
+    public void testBoundedAndPersistent() throws Exception {
+        final var theFile = new File(Files.createTempDirectory("querylog").toFile(), "querylog.json");
+        final var theLog = new QueryLog(theFile);
+        theLog.record("dilbert", Collections.singletonMap(IndexFields.LANGUAGE, "en"));
+        theLog.record("dilbert", Collections.singletonMap(IndexFields.LANGUAGE, "en"));
+        for (var i = 0; i < QueryLog.MAX_ENTRIES; i++) {
+            theLog.record("query" + i, null);
+        }
+        assertEquals(QueryLog.MAX_ENTRIES, theLog.top(Integer.MAX_VALUE).size());
+        theLog.save();
+
+        final var theLoaded = new QueryLog(theFile).top(1).get(0);
+        assertEquals("dilbert", theLoaded.getQueryString());
+        assertEquals("en", theLoaded.getDrilldownFields().get(IndexFields.LANGUAGE));
+        assertEquals(2, theLoaded.getCount());
+    }
+
+    @Test
+    public void testNewQueriesReplaceQueriesNoLongerUsed() throws Exception {
+        final var theLog = new QueryLog(new File(Files.createTempDirectory("querylog").toFile(), "querylog.json"));
+        for (var i = 0; i < QueryLog.MAX_ENTRIES; i++) {
+            theLog.record("popular" + i, null, 0);
+            theLog.record("popular" + i, null, 0);
+        }
+
+        // A full log of queries used twice still takes a new one
+        theLog.record("new", null, 1);
+        assertEquals(QueryLog.MAX_ENTRIES, theLog.top(Integer.MAX_VALUE, 1).size());
+        assertTrue(theLog.top(Integer.MAX_VALUE, 1).stream().anyMatch(t -> "new".equals(t.getQueryString())));
+
+        // Once the old queries are no longer used, a single recent use counts more
+        final var theLater = 3 * QueryLog.HALF_LIFE;
+        theLog.record("recent", null, theLater);
+        assertEquals("recent", theLog.top(1, theLater).get(0).getQueryString());
+    }
+}
@@ -0,0 +1,77 @@
+/*
+ * FXDesktopSearch Copyright 2013 Mirko Sertic
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package de.mirkosertic.desktopsearch;
+
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.Collections;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+
+public class QueryOptionsTest {
+
+    @Test
+    public void testPlainQuery() {
+        final var theOptions = QueryOptions.parse("scott  adams -dogbert");
+        assertEquals("scott adams -dogbert", theOptions.getQueryString());
+        assertEquals(Collections.emptyList(), theOptions.getFilterQueries());
+        assertEquals(QueryOptions.SORT_RELEVANCE, theOptions.getSort());
+    }
+
+    @Test
+    public void testDateRanges() {
+        final var theOptions = QueryOptions.parse("scott modified:2019-03 modified>2018 modified<2019-06-30 modified:2018..2019-06");
+        assertEquals("scott", theOptions.getQueryString());
+        assertEquals(Arrays.asList(
+                "lastmodified:[2019-03-01T00:00:00Z TO 2019-04-01T00:00:00Z}",
+                "lastmodified:[2019-01-01T00:00:00Z TO *]",
+                "lastmodified:[* TO 2019-06-30T00:00:00Z}",
+                "lastmodified:[2018-01-01T00:00:00Z TO 2019-07-01T00:00:00Z}"), theOptions.getFilterQueries());
+    }
+
+    @Test
+    public void testSizeRanges() {
+        final var theOptions = QueryOptions.parse("Size>10MB size<500kb size:1mb.. adams");
+        assertEquals("adams", theOptions.getQueryString());
+        assertEquals(Arrays.asList(
+                "filesize:{10485760 TO *]",
+                "filesize:[* TO 512000}",
+                "filesize:[1048576 TO *]"), theOptions.getFilterQueries());
+    }
+
+    @Test
+    public void testSort() {
+        assertEquals(QueryOptions.SORT_DATE, QueryOptions.parse("dogbert sort:date").getSort());
+        assertEquals(QueryOptions.SORT_SIZE, QueryOptions.parse("sort:size dogbert").getSort());
+        assertEquals("dogbert", QueryOptions.parse("sort:size dogbert").getQueryString());
+    }
+
+    @Test
+    public void testPeriodFilter() {
+        assertEquals("date_created:[2019-12-01T00:00:00Z TO 2020-01-01T00:00:00Z}", QueryOptions.periodFilter("date_created", "2019-12"));
+        assertEquals("date_created:[2020-02-29T00:00:00Z TO 2020-03-01T00:00:00Z}", QueryOptions.periodFilter("date_created", "2020-02-29"));
+        assertNull(QueryOptions.periodFilter("date_created", "yesterday"));
+    }
+
+    @Test
+    public void testInvalidOptionsAreSearchedFor() {
+        final var theOptions = QueryOptions.parse("modified:2019-13 size>huge sort:name");
+        assertEquals("modified:2019-13 size>huge sort:name", theOptions.getQueryString());
+        assertEquals(Collections.emptyList(), theOptions.getFilterQueries());
+    }
+}
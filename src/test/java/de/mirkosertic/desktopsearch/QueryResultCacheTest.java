@@ -0,0 +1,79 @@
+/*
+ * FXDesktopSearch Copyright 2013 Mirko Sertic
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package de.mirkosertic.desktopsearch;
+
+import org.junit.Test;
+
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+
+public class QueryResultCacheTest {
+
+    private static QueryResult result(final String aQueryString) {
+        return new QueryResult(aQueryString, 10, Collections.emptyList(), Collections.emptyList(), 0, Collections.emptyList(), null);
+    }
+
+    @Test
+    public void testResultsPerQueryAndDrilldown() {
+        final var theCache = new QueryResultCache();
+        theCache.searcherOpened(1);
+
+        final Map<String, String> theDrilldown = new HashMap<>();
+        theDrilldown.put(IndexFields.LANGUAGE, "en");
+        final var theResult = result("scott adams");
+        theCache.put(new QueryResultCache.Key("scott adams", "/search/scott+adams", theDrilldown, "*"), 1, theResult);
+
+        assertSame(theResult, theCache.get(new QueryResultCache.Key(" scott  adams ", "/search/scott+adams", theDrilldown, "*")));
+        assertNull(theCache.get(new QueryResultCache.Key("scott adams", "/search/scott+adams", null, "*")));
+        assertEquals(1, theCache.stats().hitCount());
+        assertEquals(1, theCache.stats().missCount());
+    }
+
+    @Test
+    public void testNewSearcherInvalidates() {
+        final var theCache = new QueryResultCache();
+        theCache.searcherOpened(1);
+        final var theKey = new QueryResultCache.Key("dogbert", "/search/dogbert", null, "*");
+        theCache.put(theKey, 1, result("dogbert"));
+
+        theCache.searcherOpened(2);
+        assertNull(theCache.get(theKey));
+
+        // Still computed on the old searcher while the new one was warmed up
+        theCache.put(theKey, 1, result("dogbert"));
+        assertNull(theCache.get(theKey));
+
+        final var theResult = result("dogbert");
+        theCache.put(theKey, 2, theResult);
+        assertSame(theResult, theCache.get(theKey));
+    }
+
+    @Test
+    public void testConfigurationChangeInvalidates() {
+        final var theCache = new QueryResultCache();
+        theCache.searcherOpened(1);
+        final var theKey = new QueryResultCache.Key("catbert", "/search/catbert", null, "*");
+        theCache.put(theKey, 1, result("catbert"));
+
+        theCache.invalidateAll();
+        assertNull(theCache.get(theKey));
+    }
+}
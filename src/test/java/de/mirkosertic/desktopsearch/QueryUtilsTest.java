@@ -0,0 +1,147 @@
+/*
+ * FXDesktopSearch Copyright 2013 Mirko Sertic
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package de.mirkosertic.desktopsearch;
+
+import org.apache.lucene.analysis.Analyzer;
+import org.apache.lucene.analysis.core.LowerCaseFilterFactory;
+import org.apache.lucene.analysis.custom.CustomAnalyzer;
+import org.apache.lucene.analysis.miscellaneous.PerFieldAnalyzerWrapper;
+import org.apache.lucene.analysis.ngram.NGramFilterFactory;
+import org.apache.lucene.analysis.standard.StandardTokenizerFactory;
+import org.apache.lucene.document.Document;
+import org.apache.lucene.document.Field;
+import org.apache.lucene.document.TextField;
+import org.apache.lucene.index.DirectoryReader;
+import org.apache.lucene.index.IndexWriter;
+import org.apache.lucene.index.IndexWriterConfig;
+import org.apache.lucene.index.Term;
+import org.apache.lucene.search.IndexSearcher;
+import org.apache.lucene.search.WildcardQuery;
+import org.apache.lucene.search.spans.SpanMultiTermQueryWrapper;
+import org.apache.lucene.search.spans.SpanNearQuery;
+import org.apache.lucene.search.spans.SpanQuery;
+import org.apache.lucene.search.spans.SpanTermQuery;
+import org.apache.lucene.store.ByteBuffersDirectory;
+import org.apache.solr.analysis.ReversedWildcardFilterFactory;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.util.Map;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class QueryUtilsTest {
+
+    private static Analyzer analyzer() throws IOException {
+        final var theContent = CustomAnalyzer.builder()
+                .withTokenizer(StandardTokenizerFactory.class)
+                .addTokenFilter(LowerCaseFilterFactory.class)
+                .build();
+        final var theReversed = CustomAnalyzer.builder()
+                .withTokenizer(StandardTokenizerFactory.class)
+                .addTokenFilter(LowerCaseFilterFactory.class)
+                .addTokenFilter(ReversedWildcardFilterFactory.class, "withOriginal", "false")
+                .build();
+        final var theNGram = CustomAnalyzer.builder()
+                .withTokenizer(StandardTokenizerFactory.class)
+                .addTokenFilter(LowerCaseFilterFactory.class)
+                .addTokenFilter(NGramFilterFactory.class, "minGramSize", Integer.toString(QueryUtils.MIN_NGRAM_SIZE),
+                        "maxGramSize", Integer.toString(QueryUtils.MAX_NGRAM_SIZE))
+                .build();
+        return new PerFieldAnalyzerWrapper(theContent,
+                Map.of(IndexFields.CONTENT_REVERSED, theReversed, IndexFields.CONTENT_NGRAM, theNGram));
+    }
+
+    @Test
+    public void testWildcardsAreRoutedByShape() {
+        assertEquals(WildcardQuery.class, QueryUtils.wildcardQuery(IndexFields.CONTENT, "foo*").getClass());
+        assertEquals(WildcardQuery.class, QueryUtils.wildcardQuery(IndexFields.CONTENT, "f?o*").getClass());
+        assertEquals(IndexFields.CONTENT_NGRAM, QueryUtils.wildcardQuery(IndexFields.CONTENT, "*foo*").getField());
+        assertEquals(IndexFields.CONTENT_REVERSED, QueryUtils.wildcardQuery(IndexFields.CONTENT, "*foo").getField());
+        assertEquals(IndexFields.CONTENT_REVERSED, QueryUtils.wildcardQuery(IndexFields.CONTENT, "?f*o").getField());
+        // Too short or too long for the n-gram field, and both ends open for the reversed field
+        assertEquals(IndexFields.CONTENT, QueryUtils.wildcardQuery(IndexFields.CONTENT, "*fo*").getField());
+        assertEquals(IndexFields.CONTENT, QueryUtils.wildcardQuery(IndexFields.CONTENT, "*foobarbaz*").getField());
+        // Other fields have no copies
+        assertEquals("other", QueryUtils.wildcardQuery("other", "*foo").getField());
+    }
+
+    @Test
+    public void testRoutedWildcardsMatchLikeTheOriginal() throws IOException {
+        final var theTexts = new String[] {
+                "The reindexing of documents is slow",
+                "a quick brown fox jumps over the lazy dog",
+                "Indexing documents and indexes",
+                "nothing to see here",
+        };
+        try (final var theDirectory = new ByteBuffersDirectory()) {
+            try (final var theWriter = new IndexWriter(theDirectory, new IndexWriterConfig(analyzer()))) {
+                for (final var theText : theTexts) {
+                    final var theDocument = new Document();
+                    theDocument.add(new Field(IndexFields.CONTENT, theText, TextField.TYPE_NOT_STORED));
+                    theDocument.add(new Field(IndexFields.CONTENT_REVERSED, theText, TextField.TYPE_NOT_STORED));
+                    theDocument.add(new Field(IndexFields.CONTENT_NGRAM, theText, TextField.TYPE_NOT_STORED));
+                    theWriter.addDocument(theDocument);
+                }
+            }
+            try (final var theReader = DirectoryReader.open(theDirectory)) {
+                final var theSearcher = new IndexSearcher(theReader);
+                for (final var thePattern : new String[] {"*index*", "*exing", "*o?s", "*uick", "*own*", "*zzz*"}) {
+                    final var theRouted = QueryUtils.wildcardQuery(IndexFields.CONTENT, thePattern);
+                    assertTrue(theRouted instanceof RoutedWildcardQuery);
+                    assertEquals(thePattern, theSearcher.count(new WildcardQuery(new Term(IndexFields.CONTENT, thePattern))),
+                            theSearcher.count(theRouted));
+                }
+
+                // Positions are the same as in the content field, so routed spans work in proximity queries
+                final var theNear = new SpanNearQuery(new SpanQuery[] {
+                        QueryUtils.wildcardSpanQuery(IndexFields.CONTENT, "*exing"),
+                        new SpanTermQuery(new Term(IndexFields.CONTENT, "of")),
+                        QueryUtils.wildcardSpanQuery(IndexFields.CONTENT, "*cument*")}, 0, true);
+                final var theOriginalNear = new SpanNearQuery(new SpanQuery[] {
+                        new SpanMultiTermQueryWrapper<>(new WildcardQuery(new Term(IndexFields.CONTENT, "*exing"))),
+                        new SpanTermQuery(new Term(IndexFields.CONTENT, "of")),
+                        new SpanMultiTermQueryWrapper<>(new WildcardQuery(new Term(IndexFields.CONTENT, "*cument*")))}, 0, true);
+                assertEquals(1, theSearcher.count(theNear));
+                assertEquals(theSearcher.count(theOriginalNear), theSearcher.count(theNear));
+            }
+        }
+    }
+
+    @Test
+    public void testIndexesWithoutCopyFieldsFallBackToTheOriginal() throws IOException {
+        try (final var theDirectory = new ByteBuffersDirectory()) {
+            try (final var theWriter = new IndexWriter(theDirectory, new IndexWriterConfig(analyzer()))) {
+                final var theDocument = new Document();
+                theDocument.add(new Field(IndexFields.CONTENT, "The reindexing of documents is slow", TextField.TYPE_NOT_STORED));
+                theWriter.addDocument(theDocument);
+            }
+            try (final var theReader = DirectoryReader.open(theDirectory)) {
+                final var theSearcher = new IndexSearcher(theReader);
+                assertEquals(1, theSearcher.count(QueryUtils.wildcardQuery(IndexFields.CONTENT, "*exing")));
+                assertEquals(1, theSearcher.count(QueryUtils.wildcardQuery(IndexFields.CONTENT, "*cument*")));
+
+                // Span clauses are rewritten by their wrapper, and fall back as well
+                final var theNear = new SpanNearQuery(new SpanQuery[] {
+                        QueryUtils.wildcardSpanQuery(IndexFields.CONTENT, "*exing"),
+                        new SpanTermQuery(new Term(IndexFields.CONTENT, "of")),
+                        QueryUtils.wildcardSpanQuery(IndexFields.CONTENT, "*cument*")}, 0, true);
+                assertEquals(1, theSearcher.count(theNear));
+            }
+        }
+    }
+}
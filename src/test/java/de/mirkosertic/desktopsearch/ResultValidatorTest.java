@@ -0,0 +1,58 @@
+/*
+ * FXDesktopSearch Copyright 2013 Mirko Sertic
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package de.mirkosertic.desktopsearch;
+
+import org.junit.Test;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.Arrays;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class ResultValidatorTest {
+
+    @Test
+    public void testStaleFilesAreReported() throws IOException, InterruptedException {
+        final var theExisting = Files.createTempFile("validator", ".txt").toFile();
+        theExisting.deleteOnExit();
+        final var theMissing = new File(theExisting.getParentFile(), theExisting.getName() + ".missing");
+
+        final var theStaleFiles = new CountDownLatch(1);
+        final var theStaleFile = new File[1];
+        final var theValidator = new ResultValidator(f -> {
+            theStaleFile[0] = f;
+            theStaleFiles.countDown();
+        });
+        try {
+            assertFalse(theValidator.isVerified(theExisting));
+
+            theValidator.validate(Arrays.asList(theExisting, theMissing));
+
+            assertTrue(theStaleFiles.await(10, TimeUnit.SECONDS));
+            assertEquals(theMissing, theStaleFile[0]);
+            assertTrue(theValidator.isVerified(theExisting));
+            assertFalse(theValidator.isVerified(theMissing));
+        } finally {
+            theValidator.shutdown();
+        }
+    }
+}
@@ -0,0 +1,59 @@
+/*
+ * FXDesktopSearch Copyright 2013 Mirko Sertic
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package de.mirkosertic.desktopsearch;
+
+import org.junit.Test;
+
+import java.io.IOException;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+public class SampledLanguageDetectorTest {
+
+    @Test
+    public void testShortTextIsOneWindow() {
+        final var theWindows = SampledLanguageDetector.windowsFor("Hello world");
+        assertEquals(1, theWindows.size());
+        assertEquals("Hello world", theWindows.get(0));
+    }
+
+    @Test
+    public void testLargeTextIsSampled() {
+        final var theText = new StringBuilder();
+        while (theText.length() < 1024 * 1024) {
+            theText.append("lorem ipsum dolor sit amet ");
+        }
+        final var theWindows = SampledLanguageDetector.windowsFor(theText.toString());
+        assertEquals(3, theWindows.size());
+        for (final var theWindow : theWindows) {
+            assertTrue(theWindow.length() <= SampledLanguageDetector.WINDOW_SIZE);
+        }
+    }
+
+    @Test
+    public void testDetectAndCache() throws IOException {
+        final var theText = new StringBuilder();
+        while (theText.length() < 100000) {
+            theText.append("The quick brown fox jumps over the lazy dog while the farmer is watching the sheep. ");
+        }
+        final var theDetector = new SampledLanguageDetector();
+        final var theResult = theDetector.detect(theText.toString());
+        assertEquals("en", theResult.getLanguage());
+        assertSame(theResult, theDetector.detect(theText.toString()));
+    }
+}
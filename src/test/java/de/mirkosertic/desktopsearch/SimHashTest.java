@@ -0,0 +1,71 @@
+/*
+ * FXDesktopSearch Copyright 2013 Mirko Sertic
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package de.mirkosertic.desktopsearch;
+
+import org.junit.Test;
+
+import java.util.HashSet;
+import java.util.Random;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+public class SimHashTest {
+
+    private static String randomText(final Random aRandom, final int aWords) {
+        final var theResult = new StringBuilder();
+        for (var i = 0; i < aWords; i++) {
+            theResult.append("word").append(aRandom.nextInt(2000)).append(' ');
+        }
+        return theResult.toString();
+    }
+
+    @Test
+    public void testNearDuplicatesAreClose() {
+        final var theText = randomText(new Random(42), 2000);
+        final var theEdited = "Final version, " + theText.replace("word17 ", "changed ") + " approved by management";
+
+        final long theHash = SimHash.of(theText);
+        final long theEditedHash = SimHash.of(theEdited);
+        assertTrue(SimHash.distance(theHash, theEditedHash) <= SimHash.MAX_DISTANCE);
+
+        final var theSharedBands = new HashSet<>(SimHash.bandsOf(theHash));
+        theSharedBands.retainAll(SimHash.bandsOf(theEditedHash));
+        assertFalse(theSharedBands.isEmpty());
+    }
+
+    @Test
+    public void testDifferentTextsAreFarApart() {
+        final var theRandom = new Random(42);
+        final long theHash1 = SimHash.of(randomText(theRandom, 2000));
+        final long theHash2 = SimHash.of(randomText(theRandom, 2000));
+        assertTrue(SimHash.distance(theHash1, theHash2) > SimHash.MAX_DISTANCE);
+    }
+
+    @Test
+    public void testShortTextHasNoSignature() {
+        assertNull(SimHash.of("just a few words"));
+    }
+
+    @Test
+    public void testBands() {
+        assertEquals(SimHash.BANDS, SimHash.bandsOf(0x123456789abcdef0L).size());
+        assertEquals("0:def0", SimHash.bandsOf(0x123456789abcdef0L).get(0));
+        assertEquals("3:1234", SimHash.bandsOf(0x123456789abcdef0L).get(3));
+    }
+}
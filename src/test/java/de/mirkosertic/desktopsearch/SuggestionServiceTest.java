@@ -0,0 +1,124 @@
+/*
+ * FXDesktopSearch Copyright 2013 Mirko Sertic
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package de.mirkosertic.desktopsearch;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+
+public class SuggestionServiceTest {
+
+    private static final Suggestion[] PHRASES = {
+            new Suggestion("", "quick brown fox"),
+            new Suggestion("", "quick blue sky"),
+            new Suggestion("", "quiet brown dog"),
+    };
+
+    private static Suggestion[] matching(final String aTerm) {
+        final List<Suggestion> theResult = new ArrayList<>();
+        for (final var thePhrase : PHRASES) {
+            if (thePhrase.getValue().startsWith(aTerm)) {
+                theResult.add(thePhrase);
+            }
+        }
+        return theResult.toArray(new Suggestion[0]);
+    }
+
+    @Test
+    public void testResultsAreCachedPerSearcherVersion() throws Exception {
+        final List<String> theLookups = new ArrayList<>();
+        final var theService = new SuggestionService(aTerm -> {
+            theLookups.add(aTerm);
+            return new SuggestionService.Result(1, matching(aTerm), true);
+        });
+
+        assertEquals(2, theService.suggest("client", "quick").length);
+        assertEquals(2, theService.suggest("client", "Quick").length);
+        assertEquals(1, theLookups.size());
+
+        theService.searcherOpened(2);
+        theService.suggest("client", "quick");
+        assertEquals(2, theLookups.size());
+    }
+
+    @Test
+    public void testExtendedPrefixIsNarrowedFromCompleteResult() throws Exception {
+        final List<String> theLookups = new ArrayList<>();
+        final var theService = new SuggestionService(aTerm -> {
+            theLookups.add(aTerm);
+            return new SuggestionService.Result(1, matching(aTerm), true);
+        });
+
+        theService.suggest("client", "qui");
+        final var theNarrowed = theService.suggest("client", "quick br");
+        assertEquals(1, theLookups.size());
+        assertEquals(1, theNarrowed.length);
+        assertEquals("quick brown fox", theNarrowed[0].getValue());
+
+        // An incomplete result might miss matches of the longer prefix, even if it is short
+        final var theLimited = new SuggestionService(aTerm -> {
+            theLookups.add(aTerm);
+            return new SuggestionService.Result(1, matching(aTerm), false);
+        });
+        theLookups.clear();
+        theLimited.suggest("client", "quick");
+        theLimited.suggest("client", "quick b");
+        assertEquals(2, theLookups.size());
+    }
+
+    @Test
+    public void testSupersededRequestIsDropped() throws Exception {
+        final var theStarted = new CountDownLatch(1);
+        final var theRelease = new CountDownLatch(1);
+        final var theService = new SuggestionService(aTerm -> {
+            if ("slow".equals(aTerm)) {
+                theStarted.countDown();
+                try {
+                    theRelease.await();
+                } catch (final InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+            }
+            return new SuggestionService.Result(1, matching(aTerm), true);
+        });
+
+        final var theExecutor = Executors.newCachedThreadPool();
+        try {
+            final Future<Suggestion[]> theSlow = theExecutor.submit(() -> theService.suggest("client", "slow"));
+            theStarted.await();
+            final Future<Suggestion[]> theWaiting = theExecutor.submit(() -> theService.suggest("client", "quic"));
+            // Give the second request time to queue up behind the running one
+            Thread.sleep(200);
+            final Future<Suggestion[]> theLatest = theExecutor.submit(() -> theService.suggest("client", "quick"));
+            Thread.sleep(200);
+            theRelease.countDown();
+
+            assertEquals(0, theSlow.get(5, TimeUnit.SECONDS).length);
+            assertNull(theWaiting.get(5, TimeUnit.SECONDS));
+            assertEquals(2, theLatest.get(5, TimeUnit.SECONDS).length);
+        } finally {
+            theExecutor.shutdownNow();
+        }
+    }
+}